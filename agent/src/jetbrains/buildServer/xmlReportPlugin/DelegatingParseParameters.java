@@ -0,0 +1,100 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.xmlReportPlugin.cache.ParseStatistics;
+import jetbrains.buildServer.xmlReportPlugin.cache.ReportCache;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Passes all calls to the given parameters, subclasses override what they need
+ */
+public class DelegatingParseParameters implements ParseParameters {
+  @NotNull
+  private final ParseParameters myDelegate;
+
+  public DelegatingParseParameters(@NotNull final ParseParameters delegate) {
+    myDelegate = delegate;
+  }
+
+  public boolean isVerbose() {
+    return myDelegate.isVerbose();
+  }
+
+  @NotNull
+  public BuildProgressLogger getThreadLogger() {
+    return myDelegate.getThreadLogger();
+  }
+
+  @NotNull
+  public InspectionReporter getInspectionReporter() {
+    return myDelegate.getInspectionReporter();
+  }
+
+  @NotNull
+  public InspectionLimits getInspectionLimits() {
+    return myDelegate.getInspectionLimits();
+  }
+
+  @NotNull
+  public DuplicationReporter getDuplicationReporter() {
+    return myDelegate.getDuplicationReporter();
+  }
+
+  @NotNull
+  public TestReporter getTestReporter() {
+    return myDelegate.getTestReporter();
+  }
+
+  @Nullable
+  public ReportCache getReportCache() {
+    return myDelegate.getReportCache();
+  }
+
+  @Nullable
+  public ParseStatistics getParseStatistics() {
+    return myDelegate.getParseStatistics();
+  }
+
+  @NotNull
+  public ParseBudget getParseBudget() {
+    return myDelegate.getParseBudget();
+  }
+
+  @NotNull
+  public Map<String, String> getParameters() {
+    return myDelegate.getParameters();
+  }
+
+  @NotNull
+  public String getType() {
+    return myDelegate.getType();
+  }
+
+  @NotNull
+  public File getCheckoutDir() {
+    return myDelegate.getCheckoutDir();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.*;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Rules reading report paths from an append-only manifest file instead of scanning directories.
+ * The manifest lists one completed report per line, relative paths are resolved against the base directory,
+ * empty lines and lines starting with # are ignored. A line is read only when it's terminated with a line break.
+ * The manifest is read incrementally from the offset where the previous read stopped,
+ * a report listed again is treated as updated.
+ */
+public class ManifestRules implements IncrementalRules {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @NotNull
+  private final File myManifest;
+  @NotNull
+  private final File myBaseDir;
+
+  @NotNull
+  private final Set<File> myFiles = new LinkedHashSet<File>();
+  private long myOffset;
+
+  public ManifestRules(@NotNull final File manifest, @NotNull final File baseDir) {
+    myManifest = manifest;
+    myBaseDir = baseDir;
+  }
+
+  @NotNull
+  public Collection<String> getBody() {
+    return Collections.singletonList(myManifest.getPath());
+  }
+
+  @NotNull
+  public Collection<File> getPaths() {
+    return Collections.singletonList(myManifest);
+  }
+
+  /**
+   * @return all reports listed in the manifest so far
+   */
+  @NotNull
+  public synchronized Collection<File> collectFiles() {
+    readNewEntries();
+    return new ArrayList<File>(myFiles);
+  }
+
+  @NotNull
+  public synchronized Collection<File> collectNewFiles() {
+    return readNewEntries();
+  }
+
+  @NotNull
+  private List<File> readNewEntries() {
+    final long length = myManifest.length();
+    if (length < myOffset) {
+      // manifest was recreated
+      myOffset = 0;
+    }
+    if (length == myOffset) return Collections.emptyList();
+
+    final byte[] bytes;
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(myManifest, "r");
+      bytes = new byte[(int)Math.min(raf.length() - myOffset, Integer.MAX_VALUE)];
+      raf.seek(myOffset);
+      raf.readFully(bytes);
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to read report manifest " + myManifest, e);
+      return Collections.emptyList();
+    } finally {
+      FileUtil.close(raf);
+    }
+
+    int end = bytes.length;
+    while (end > 0 && bytes[end - 1] != '\n') --end;
+    if (end == 0) return Collections.emptyList();
+    myOffset += end;
+
+    final List<File> result = new ArrayList<File>();
+    for (String line : new String(bytes, 0, end, UTF_8).split("\r?\n")) {
+      final String path = line.trim();
+      if (path.length() == 0 || path.startsWith("#")) continue;
+
+      final File file = new File(FileUtil.normalizeAbsolutePath(FileUtil.resolvePath(myBaseDir, path).getAbsolutePath()));
+      result.add(file);
+      myFiles.add(file);
+    }
+    return result;
+  }
+}
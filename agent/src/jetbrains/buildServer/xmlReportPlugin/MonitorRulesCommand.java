@@ -18,8 +18,13 @@ package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.xmlReportPlugin.ready.ReportReadyPolicy;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.ReportFingerprint;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -40,6 +45,18 @@ public class MonitorRulesCommand {
     @NotNull BuildProgressLogger getThreadLogger();
 
     boolean isReparseUpdated();
+
+    /**
+     * @return number of bytes from the beginning and the end of a report used to check whether its content changed,
+     * 0 if any newer report is treated as changed. A report of the same length changed only in the middle
+     * is not detected, so the check is off unless configured
+     */
+    int getSignatureDepth();
+
+    /**
+     * @return policy telling if the writer is done with a report
+     */
+    @NotNull ReportReadyPolicy getReadyPolicy();
   }
 
   public static interface MonitorRulesListener {
@@ -56,21 +73,51 @@ public class MonitorRulesCommand {
   private final MonitorRulesListener myListener;
   private final boolean myQuietMode;
 
+  @NotNull
+  private final FileSnapshot.Reader myFileReader;
+
   private boolean myFirstRun;
 
+  /**
+   * Files returned by {@link IncrementalRules} which were not ready to be processed yet
+   * or may have to be processed again: being processed, failed, out-of-date or reparsed on update
+   */
+  @NotNull
+  private Set<File> myPendingFiles = new LinkedHashSet<File>();
+
   public MonitorRulesCommand(@NotNull MonitorRulesParameters parameters,
                              @NotNull ReportStateHolder reportStateHolder,
                              final boolean quietMode,
                              @NotNull MonitorRulesListener listener) {
+    this(parameters, reportStateHolder, quietMode, listener, FileSnapshot.DEFAULT_READER);
+  }
+
+  /**
+   * @param fileReader reads attributes of monitored files, once per file on each run
+   */
+  public MonitorRulesCommand(@NotNull MonitorRulesParameters parameters,
+                             @NotNull ReportStateHolder reportStateHolder,
+                             final boolean quietMode,
+                             @NotNull MonitorRulesListener listener,
+                             @NotNull FileSnapshot.Reader fileReader) {
     myParameters = parameters;
     myReportStateHolder = reportStateHolder;
     myListener = listener;
     myQuietMode = quietMode;
+    myFileReader = fileReader;
 
     myFirstRun = true;
   }
 
   public void run() {
+    run(false);
+  }
+
+  /**
+   * @param writersFinished true if reports are not written anymore, e.g. the build step is finished,
+   *                        so the ready policy is not consulted
+   */
+  public void run(final boolean writersFinished) {
     if (myFirstRun) {
       if (!myQuietMode) {
         logWatchingPaths();
@@ -81,40 +128,56 @@ public class MonitorRulesCommand {
 
     monitorRules(
       new MonitorRulesFileProcessor() {
-        public void processFile(@NotNull File file) {
-          if (acceptFile(file)) {
+        public boolean processFile(@NotNull File file) {
+          final FileSnapshot snapshot = myFileReader.read(file);
+          if (snapshot == null || !acceptFile(snapshot)) return false;
 
-            final long fileLastModified = file.lastModified();
+          final long fileLastModified = snapshot.getLastModified();
+          final long fileLength = snapshot.getLength();
+          final ReportStateHolder.ReportState state = myReportStateHolder.getReportState(file);
 
-            if (timeConstraintsSatisfied(fileLastModified)) {
-              switch (myReportStateHolder.getReportState(file)) {
-                case ON_PROCESSING:
-                  return;
-                case UNKNOWN:
-                  myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, file.length());
-                  modificationDetected(file);
-                  return;
-                case PROCESSED:
-                  if (!myParameters.isReparseUpdated()) return;
-                case ERROR:
-                case OUT_OF_DATE:
-                  final long fileLength = file.length();
-
-                  final Long lastModified = myReportStateHolder.getLastModified(file);
-                  final Long length = myReportStateHolder.getLength(file);
-
-                  assert lastModified != null;
-                  assert length != null;
-
-                  if (fileLastModified > lastModified || fileLength > length) {
-                    myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.ON_PROCESSING, file.lastModified(), file.length());
-                    modificationDetected(file);
+          if (timeConstraintsSatisfied(fileLastModified)) {
+            switch (state) {
+              case ON_PROCESSING:
+                // checked again after processing as it may be updated meanwhile
+                return false;
+              case UNKNOWN:
+                if (!myFileReader.canRead(file) || !isReady(file, snapshot, writersFinished)) return false;
+                myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, fileLength);
+                rememberSignature(file);
+                modificationDetected(file);
+                return true;
+              case PROCESSED:
+              case DUPLICATE:
+                if (!myParameters.isReparseUpdated()) return true;
+              case ERROR:
+              case OUT_OF_DATE:
+                final Long lastModified = myReportStateHolder.getLastModified(file);
+                final Long length = myReportStateHolder.getLength(file);
+
+                assert lastModified != null;
+                assert length != null;
+
+                if (fileLastModified > lastModified || fileLength > length) {
+                  if (fileLength == length && isContentUnchanged(file)) {
+                    // touched or rewritten with the same content
+                    myReportStateHolder.setReportState(file, state, fileLastModified, fileLength);
+                    return true;
                   }
-              }
-            } else {
-              myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.OUT_OF_DATE, fileLastModified, file.length());
+                  if (state == ReportStateHolder.ReportState.ERROR && !writersFinished && !myReportStateHolder.isRetryDue(file)) return false;
+                  if (!myFileReader.canRead(file) || !isReady(file, snapshot, writersFinished)) return false;
+                  myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.ON_PROCESSING, fileLastModified, fileLength);
+                  rememberSignature(file);
+                  modificationDetected(file);
+                }
+                return true;
             }
+          } else {
+            // readability is checked only once, not on every tick
+            if (state == ReportStateHolder.ReportState.UNKNOWN && !myFileReader.canRead(file)) return false;
+            myReportStateHolder.setReportState(file, ReportStateHolder.ReportState.OUT_OF_DATE, fileLastModified, fileLength);
           }
+          return true;
         }
       }
     );
@@ -144,22 +207,64 @@ public class MonitorRulesCommand {
     return myParameters.getThreadLogger();
   }
 
+  private boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot, boolean writersFinished) {
+    return writersFinished || myParameters.getReadyPolicy().isReady(file, snapshot);
+  }
+
+  private void rememberSignature(@NotNull File file) {
+    final int depth = myParameters.getSignatureDepth();
+    if (depth > 0) myReportStateHolder.setSignature(file, ReportFingerprint.computeSignature(file, depth));
+  }
+
+  private boolean isContentUnchanged(@NotNull File file) {
+    final int depth = myParameters.getSignatureDepth();
+    if (depth <= 0) return false;
+
+    final String signature = myReportStateHolder.getSignature(file);
+    return signature != null && signature.equals(ReportFingerprint.computeSignature(file, depth));
+  }
+
   private void modificationDetected(File file) {
     myListener.modificationDetected(file);
   }
 
   private interface MonitorRulesFileProcessor {
-    void processFile(@NotNull File file);
+    /**
+     * @return false if the file is not ready to be processed and should be checked again
+     */
+    boolean processFile(@NotNull File file);
   }
 
   private void monitorRules(@NotNull MonitorRulesFileProcessor monitorRulesFileProcessor) {
-    for (File file : myParameters.getRules().collectFiles()) {
+    final Rules rules = myParameters.getRules();
+    if (rules instanceof IncrementalRules) {
+      // only new files and files which may still have to be processed are checked
+      final Set<File> files = myPendingFiles;
+      files.addAll(((IncrementalRules)rules).collectNewFiles());
+      myPendingFiles = new LinkedHashSet<File>();
+      for (File file : files) {
+        if (!monitorRulesFileProcessor.processFile(file) || isCheckedAgain(file)) myPendingFiles.add(file);
+      }
+      return;
+    }
+
+    for (File file : rules.collectFiles()) {
       monitorRulesFileProcessor.processFile(file);
     }
   }
 
-  private boolean acceptFile(@NotNull File f) {
-    return f.isFile() && f.canRead() && f.length() > 0;
+  private boolean isCheckedAgain(@NotNull File file) {
+    switch (myReportStateHolder.getReportState(file)) {
+      case PROCESSED:
+      case DUPLICATE:
+        return myParameters.isReparseUpdated();
+      default:
+        return true;
+    }
+  }
+
+  private boolean acceptFile(@NotNull FileSnapshot snapshot) {
+    return snapshot.isFile() && snapshot.getLength() > 0;
   }
 
   private boolean timeConstraintsSatisfied(long lastModified) {
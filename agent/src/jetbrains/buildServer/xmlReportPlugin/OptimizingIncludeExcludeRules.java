@@ -19,10 +19,14 @@ package jetbrains.buildServer.xmlReportPlugin;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
 import jetbrains.buildServer.util.CollectionsUtil;
 import jetbrains.buildServer.util.Converter;
 import jetbrains.buildServer.util.pathMatcher.AntPatternFileCollector;
+import jetbrains.buildServer.xmlReportPlugin.utils.ParallelFileCollector;
+import jetbrains.buildServer.xmlReportPlugin.utils.RulesAutomaton;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: Victory.Bedrosova
@@ -34,10 +38,23 @@ public class OptimizingIncludeExcludeRules implements Rules {
   private final File myBaseDir;
   @NotNull
   private final Collection<String> myBody;
+  @Nullable
+  private final ParallelFileCollector myParallelCollector;
+  @Nullable
+  private final RulesAutomaton myAutomaton;
 
   public OptimizingIncludeExcludeRules(@NotNull final File baseDir, @NotNull Collection<String> body) {
+    this(baseDir, body, null);
+  }
+
+  /**
+   * @param scanPool pool to walk directories in parallel, if null directories are walked in the calling thread
+   */
+  public OptimizingIncludeExcludeRules(@NotNull final File baseDir, @NotNull Collection<String> body, @Nullable ForkJoinPool scanPool) {
     myBaseDir = baseDir;
     myBody = body;
+    myParallelCollector = scanPool == null ? null : new ParallelFileCollector(scanPool);
+    myAutomaton = scanPool == null ? null : RulesAutomaton.compile(baseDir, body);
   }
 
   @NotNull
@@ -68,6 +85,9 @@ public class OptimizingIncludeExcludeRules implements Rules {
 
   @NotNull
   public Collection<File> collectFiles() {
+    if (myParallelCollector != null && myAutomaton != null) {
+      return myBaseDir.exists() ? myParallelCollector.collect(myAutomaton) : Collections.<File>emptyList();
+    }
     return myBaseDir.exists() ? AntPatternFileCollector.scanDir(myBaseDir, getRulesArray(), getScanOptions()) : Collections.<File>emptyList();
   }
 
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Limits time spent on parsing a single report and on parsing all reports of a build.
+ *
+ * Parsing is interrupted cooperatively: reporters of parameters wrapped with {@link Timer#wrap(ParseParameters)}
+ * throw {@link ParseTimeoutException} when a suite, an inspection or a duplicate is reported or a test is closed after the deadline.
+ * Parsers also call {@link #checkpointCurrent()} for every visited element, so a report part which reports nothing is interrupted too.
+ * Everything reported before the deadline is kept, suites, tests and duplicates blocks left open are closed.
+ *
+ * Build limit is checked against the total time of all finished parses, so concurrent parses may overrun it a bit.
+ */
+public class ParseBudget {
+  public static final ParseBudget UNLIMITED = new ParseBudget(0, 0);
+
+  /**
+   * Timer of the parse running in the current thread
+   */
+  private static final ThreadLocal<Timer> CURRENT = new ThreadLocal<Timer>();
+
+  private final long myReportLimitNanos;
+  private final long myBuildLimitNanos;
+
+  @NotNull
+  private final AtomicLong mySpentNanos = new AtomicLong();
+
+  /**
+   * @param reportLimitMs time limit for parsing a single report, 0 means no limit
+   * @param buildLimitMs  time limit for parsing all reports of a build, 0 means no limit
+   */
+  public ParseBudget(long reportLimitMs, long buildLimitMs) {
+    myReportLimitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, reportLimitMs));
+    myBuildLimitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, buildLimitMs));
+  }
+
+  public boolean isLimited() {
+    return myReportLimitNanos > 0 || myBuildLimitNanos > 0;
+  }
+
+  /**
+   * @return total time of all finished parses in milliseconds
+   */
+  public long getSpentMs() {
+    return TimeUnit.NANOSECONDS.toMillis(mySpentNanos.get());
+  }
+
+  /**
+   * @return time left of the build limit in milliseconds, {@link Long#MAX_VALUE} if parsing time of a build is not limited
+   */
+  public long getBuildRemainingMs() {
+    if (myBuildLimitNanos == 0) return Long.MAX_VALUE;
+    return TimeUnit.NANOSECONDS.toMillis(Math.max(0, myBuildLimitNanos - mySpentNanos.get()));
+  }
+
+  /**
+   * Starts timing of a single parse, the returned timer must be stopped when parsing is over
+   */
+  @NotNull
+  public Timer start() {
+    final long startTime = System.nanoTime();
+    if (myBuildLimitNanos > 0) {
+      final long remaining = myBuildLimitNanos - mySpentNanos.get();
+      if (myReportLimitNanos == 0 || remaining < myReportLimitNanos) {
+        return new Timer(startTime, Math.max(0, remaining), "Parsing time limit of " + formatLimit(myBuildLimitNanos) + " per build exceeded");
+      }
+    }
+    return new Timer(startTime, myReportLimitNanos == 0 ? Long.MAX_VALUE : myReportLimitNanos,
+                     "Parsing time limit of " + formatLimit(myReportLimitNanos) + " per report exceeded");
+  }
+
+  /**
+   * Throws {@link ParseTimeoutException} if the parse running in the current thread exceeded its time limit.
+   * Called by parsers between elements, so that a report part which produces no events can be interrupted as well
+   */
+  public static void checkpointCurrent() {
+    final Timer timer = CURRENT.get();
+    if (timer != null) timer.checkpoint();
+  }
+
+  @NotNull
+  private static String formatLimit(long nanos) {
+    final long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+    return ms % 1000 == 0 ? ms / 1000 + " s" : ms + " ms";
+  }
+
+  public final class Timer {
+    private final long myStartTime;
+    private final long myLimit;
+    @NotNull
+    private final String myMessage;
+
+    @NotNull
+    private final Deque<Runnable> myOpenBlocks = new ArrayDeque<Runnable>();
+
+    @Nullable
+    private volatile ParseTimeoutException myTimeout;
+    private boolean myStopped;
+
+    private Timer(long startTime, long limit, @NotNull String message) {
+      myStartTime = startTime;
+      myLimit = limit;
+      myMessage = message;
+    }
+
+    /**
+     * Throws {@link ParseTimeoutException} if the time limit is exceeded
+     */
+    public void checkpoint() {
+      if (myTimeout == null) {
+        if (System.nanoTime() - myStartTime < myLimit) return;
+        myTimeout = new ParseTimeoutException(myMessage);
+      }
+      throw myTimeout;
+    }
+
+    /**
+     * Makes {@link #checkpointCurrent()} check this timer in the current thread until the timer is stopped in it
+     */
+    public void bindToCurrentThread() {
+      CURRENT.set(this);
+    }
+
+    public boolean isTimedOut() {
+      return myTimeout != null;
+    }
+
+    @Nullable
+    public ParseTimeoutException getTimeout() {
+      return myTimeout;
+    }
+
+    /**
+     * Closes blocks left open by the interrupted parser and charges the elapsed time to the build budget
+     */
+    public void stop() {
+      if (myStopped) return;
+      myStopped = true;
+      if (CURRENT.get() == this) CURRENT.remove();
+      synchronized (myOpenBlocks) {
+        while (!myOpenBlocks.isEmpty()) {
+          myOpenBlocks.pop().run();
+        }
+      }
+      mySpentNanos.addAndGet(System.nanoTime() - myStartTime);
+    }
+
+    @NotNull
+    public ParseParameters wrap(@NotNull final ParseParameters parameters) {
+      return new DelegatingParseParameters(parameters) {
+        @NotNull
+        @Override
+        public TestReporter getTestReporter() {
+          return limit(super.getTestReporter());
+        }
+
+        @NotNull
+        @Override
+        public InspectionReporter getInspectionReporter() {
+          return limit(super.getInspectionReporter());
+        }
+
+        @NotNull
+        @Override
+        public DuplicationReporter getDuplicationReporter() {
+          return limit(super.getDuplicationReporter());
+        }
+      };
+    }
+
+    private void opened(@NotNull Runnable close) {
+      synchronized (myOpenBlocks) {
+        myOpenBlocks.push(close);
+      }
+    }
+
+    private void closed() {
+      synchronized (myOpenBlocks) {
+        myOpenBlocks.poll();
+      }
+    }
+
+    @NotNull
+    private TestReporter limit(@NotNull final TestReporter delegate) {
+      final Runnable closeSuite = new Runnable() {
+        public void run() {
+          delegate.closeTestSuite();
+        }
+      };
+      final Runnable closeTest = new Runnable() {
+        public void run() {
+          delegate.closeTest(0);
+        }
+      };
+      return new TestReporter() {
+        public void openTestSuite(@NotNull String name) {
+          checkpoint();
+          delegate.openTestSuite(name);
+          opened(closeSuite);
+        }
+
+        public void openTest(@NotNull String name) {
+          delegate.openTest(name);
+          opened(closeTest);
+        }
+
+        public void testStdOutput(@NotNull String text) {
+          delegate.testStdOutput(text);
+        }
+
+        public void testErrOutput(@NotNull String text) {
+          delegate.testErrOutput(text);
+        }
+
+        public void testFail(@Nullable String error, @Nullable String stacktrace) {
+          delegate.testFail(error, stacktrace);
+        }
+
+        public void testIgnored(@NotNull String message) {
+          delegate.testIgnored(message);
+        }
+
+        public void closeTest(long duration) {
+          closed();
+          delegate.closeTest(duration);
+          // checked once a test is reported, so parsers count only whole tests
+          checkpoint();
+        }
+
+        public void closeTestSuite() {
+          closed();
+          delegate.closeTestSuite();
+        }
+
+        public void info(@NotNull String message) {
+          delegate.info(message);
+        }
+
+        public void warning(@NotNull String message) {
+          delegate.warning(message);
+        }
+
+        public void error(@NotNull String message) {
+          delegate.error(message);
+        }
+
+        public void failure(@NotNull String message) {
+          delegate.failure(message);
+        }
+      };
+    }
+
+    @NotNull
+    private InspectionReporter limit(@NotNull final InspectionReporter delegate) {
+      return new InspectionReporter() {
+        public void reportInspection(@NotNull InspectionResult inspection) {
+          checkpoint();
+          delegate.reportInspection(inspection);
+        }
+
+        public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+          delegate.reportInspectionType(inspectionType);
+        }
+
+        public void markBuildAsInspectionsBuild() {
+          delegate.markBuildAsInspectionsBuild();
+        }
+
+        public void info(@NotNull String message) {
+          delegate.info(message);
+        }
+
+        public void warning(@NotNull String message) {
+          delegate.warning(message);
+        }
+
+        public void error(@NotNull String message) {
+          delegate.error(message);
+        }
+
+        public void failure(@NotNull String message) {
+          delegate.failure(message);
+        }
+      };
+    }
+
+    @NotNull
+    private DuplicationReporter limit(@NotNull final DuplicationReporter delegate) {
+      final Runnable finishDuplicates = new Runnable() {
+        public void run() {
+          delegate.finishDuplicates();
+        }
+      };
+      return new DuplicationReporter() {
+        public void startDuplicates() {
+          checkpoint();
+          delegate.startDuplicates();
+          opened(finishDuplicates);
+        }
+
+        public void reportDuplicate(@NotNull DuplicationResult duplicate) {
+          checkpoint();
+          delegate.reportDuplicate(duplicate);
+        }
+
+        public void finishDuplicates() {
+          closed();
+          delegate.finishDuplicates();
+        }
+
+        public void info(@NotNull String message) {
+          delegate.info(message);
+        }
+
+        public void warning(@NotNull String message) {
+          delegate.warning(message);
+        }
+
+        public void error(@NotNull String message) {
+          delegate.error(message);
+        }
+
+        public void failure(@NotNull String message) {
+          delegate.failure(message);
+        }
+      };
+    }
+  }
+}
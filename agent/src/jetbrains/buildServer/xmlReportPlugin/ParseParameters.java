@@ -19,10 +19,14 @@ package jetbrains.buildServer.xmlReportPlugin;
 import java.io.File;
 import java.util.Map;
 import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.xmlReportPlugin.cache.ParseStatistics;
+import jetbrains.buildServer.xmlReportPlugin.cache.ReportCache;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: vbedrosova
@@ -38,12 +42,33 @@ public interface ParseParameters {
   @NotNull
   InspectionReporter getInspectionReporter();
 
+  @NotNull
+  InspectionLimits getInspectionLimits();
+
   @NotNull
   DuplicationReporter getDuplicationReporter();
 
   @NotNull
   TestReporter getTestReporter();
 
+  /**
+   * @return on-agent cache of parsed reports or null if caching is disabled
+   */
+  @Nullable
+  ReportCache getReportCache();
+
+  /**
+   * @return parse statistics of the build configuration or null if they are not collected
+   */
+  @Nullable
+  ParseStatistics getParseStatistics();
+
+  /**
+   * @return time limits of parsing, {@link ParseBudget#UNLIMITED} if parsing time is not limited
+   */
+  @NotNull
+  ParseBudget getParseBudget();
+
   @NotNull
   Map<String, String> getParameters();
 
@@ -17,8 +17,15 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import jetbrains.buildServer.agent.FlowLogger;
+import jetbrains.buildServer.xmlReportPlugin.cache.ParseStatistics;
+import jetbrains.buildServer.xmlReportPlugin.cache.PreParsedReports;
+import jetbrains.buildServer.xmlReportPlugin.cache.ReportCache;
+import jetbrains.buildServer.xmlReportPlugin.cache.ReportEvents;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * User: vbedrosova
@@ -38,14 +45,50 @@ public class ParseReportCommand implements Runnable {
   @NotNull
   private final ParserFactory myParserFactory;
 
+  @Nullable
+  private final FlowLogger myFlowLogger;
+
+  @Nullable
+  private final PreParsedReports myPreParsedReports;
+
   public ParseReportCommand(@NotNull final File file,
                             @NotNull final ParseParameters parameters,
                             @NotNull final RulesState rulesState,
                             @NotNull final ParserFactory parserFactory) {
+    this(file, parameters, rulesState, parserFactory, null, null);
+  }
+
+  /**
+   * @param flowLogger separate flow for this report, it's started before and disposed after parsing
+   */
+  public ParseReportCommand(@NotNull final File file,
+                            @NotNull final ParseParameters parameters,
+                            @NotNull final RulesState rulesState,
+                            @NotNull final ParserFactory parserFactory,
+                            @Nullable final FlowLogger flowLogger) {
+    this(file, parameters, rulesState, parserFactory, flowLogger, null);
+  }
+
+  /**
+   * @param preParsedReports reports parsed in advance, events of the report are replayed if it was parsed unchanged
+   */
+  public ParseReportCommand(@NotNull final File file,
+                            @NotNull final ParseParameters parameters,
+                            @NotNull final RulesState rulesState,
+                            @NotNull final ParserFactory parserFactory,
+                            @Nullable final FlowLogger flowLogger,
+                            @Nullable final PreParsedReports preParsedReports) {
     myFile = file;
     myParameters = parameters;
     myRulesState = rulesState;
     myParserFactory = parserFactory;
+    myFlowLogger = flowLogger;
+    myPreParsedReports = preParsedReports;
+  }
+
+  @NotNull
+  public File getFile() {
+    return myFile;
   }
 
   @NotNull
@@ -54,19 +97,83 @@ public class ParseReportCommand implements Runnable {
   }
 
   public void run() {
-    final Parser parser = myParserFactory.createParser(myParameters);
+    if (myFlowLogger == null) {
+      parse();
+      return;
+    }
+    myFlowLogger.startFlow();
+    try {
+      parse();
+    } finally {
+      myFlowLogger.disposeFlow();
+    }
+  }
+
+  private void parse() {
+    final ParsingResult prevResult = myRulesState.getParsingResult(myFile);
+    if (prevResult == null) {
+      // only reports which were not partially parsed before may be skipped
+      final File original = myRulesState.checkDuplicate(myFile);
+      if (original != null) {
+        LoggingUtils.verbose(myFile + " has the same content as " + original + ", skipped", myParameters.getThreadLogger());
+        return;
+      }
+    }
+
+    if (myPreParsedReports != null && prevResult == null) {
+      final ParsingResult preParsedResult = myPreParsedReports.replay(myFile, myParameters);
+      if (preParsedResult != null) {
+        LoggingUtils.LOG.debug("Replayed events of " + myFile + " parsed in advance");
+        preParsedResult.logAsFileResult(myFile, myParameters);
+        myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, preParsedResult);
+        return;
+      }
+    }
 
+    final ReportCache cache = myParameters.getReportCache();
+    final String cacheKey = cache != null && prevResult == null ? ReportCache.getKey(myFile, myParameters) : null;
+    if (cacheKey != null) {
+      final ParsingResult cachedResult = cache.replay(cacheKey, myParameters);
+      if (cachedResult != null) {
+        LoggingUtils.LOG.debug("Replayed cached events of " + myFile);
+        cachedResult.logAsFileResult(myFile, myParameters);
+        myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, cachedResult);
+        return;
+      }
+    }
+    final ReportEvents.Recorder recorder = cacheKey != null ? cache.createRecorder() : null;
+
+    final ParseBudget budget = myParameters.getParseBudget();
+    final ParseBudget.Timer timer = budget.isLimited() ? budget.start() : null;
+
+    ParseParameters parameters = recorder != null ? recorder.wrap(myParameters) : myParameters;
+    if (timer != null) parameters = timer.wrap(parameters);
+    final Parser parser = myParserFactory.createParser(parameters);
+
+    final long startTime = System.nanoTime();
     boolean finished;
     Throwable problem = null;
     try {
-      finished = parser.parse(myFile, myRulesState.getParsingResult(myFile));
+      if (timer != null) timer.bindToCurrentThread();
+      finished = parser.parse(myFile, prevResult);
     } catch (ParsingException e) {
       finished = true;
       problem = e;
     } catch (Throwable t) {
       finished = true;
       problem = t;
-      LoggingUtils.logException("Unexpected exception occurred while parsing " + myFile, t, myParameters.getThreadLogger());
+      if (timer == null || !timer.isTimedOut()) {
+        LoggingUtils.logException("Unexpected exception occurred while parsing " + myFile, t, myParameters.getThreadLogger());
+      }
+    } finally {
+      if (timer != null) timer.stop();
+    }
+
+    if (timer != null && timer.isTimedOut()) {
+      // the parser may have swallowed or wrapped the timeout, anyway what was reported before it is kept
+      finished = true;
+      problem = new ParsingException(timer.getTimeout());
+      LoggingUtils.LOG.debug(myFile + ": " + timer.getTimeout().getMessage());
     }
 
     final ParsingResult parsingResult = parser.getParsingResult();
@@ -75,11 +182,17 @@ public class ParseReportCommand implements Runnable {
     if (problem != null) parsingResult.setProblem(problem);
 
     if (finished) { // file processed
+      final ParseStatistics statistics = myParameters.getParseStatistics();
+      if (statistics != null && problem == null && prevResult == null) {
+        final int tests = parsingResult instanceof TestParsingResult ? ((TestParsingResult)parsingResult).getTests() : 0;
+        statistics.record(myFile, myFile.length(), (System.nanoTime() - startTime) / 1000, tests);
+      }
       parsingResult.logAsFileResult(myFile, myParameters);
       myRulesState.setReportState(myFile, problem == null ? ReportStateHolder.ReportState.PROCESSED : ReportStateHolder.ReportState.ERROR, parsingResult);
+      if (recorder != null && problem == null) cache.store(cacheKey, recorder, parsingResult);
     } else {
       //todo: log file not processed
       myRulesState.setReportState(myFile, ReportStateHolder.ReportState.ERROR, parsingResult);
     }
   }
-}
\ No newline at end of file
+}
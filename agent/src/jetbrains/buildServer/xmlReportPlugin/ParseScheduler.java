@@ -0,0 +1,257 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decides which parse task goes to the executor next.
+ * Tasks are queued per owner (rules context) and owners are served in turns, so one owner with a lot of
+ * or huge reports doesn't delay reports of the others. Within an owner tasks are taken in submission order
+ * or smallest report first. Alternatively the most expensive task of all owners is taken first, which
+ * shortens the time to parse all queued reports on several threads.
+ * Number of concurrently parsed large reports may be limited to bound memory usage.
+ * The executor gets at most maxRunning tasks at a time, so its own queue never reorders anything.
+ */
+public class ParseScheduler {
+  public enum Order {
+    /**
+     * Owners in turns, tasks of an owner in submission order
+     */
+    SUBMISSION,
+    /**
+     * Owners in turns, tasks of an owner smallest report first
+     */
+    SMALLEST_FIRST,
+    /**
+     * The task with the highest cost among all owners first
+     */
+    COSTLIEST_FIRST
+  }
+
+  @NotNull
+  private final ExecutorService myExecutor;
+  private final int myMaxRunning;
+  @NotNull
+  private final Order myOrder;
+  private final long myLargeReportSize;
+  private final int myMaxLargeRunning;
+
+  @NotNull
+  private final Map<Object, PriorityQueue<Task>> myQueues = new HashMap<Object, PriorityQueue<Task>>();
+  /**
+   * Owners with queued tasks in the order they are served
+   */
+  @NotNull
+  private final Deque<Object> myTurns = new ArrayDeque<Object>();
+  private long mySequence;
+  private int myRunning;
+  private int myLargeRunning;
+
+  /**
+   * @param maxRunning       maximum number of tasks passed to the executor at a time, usually the number of its threads
+   * @param largeReportSize  size in bytes starting from which a report is considered large
+   * @param maxLargeRunning  maximum number of large reports parsed at a time, 0 for no limit
+   */
+  public ParseScheduler(@NotNull ExecutorService executor, int maxRunning, @NotNull Order order, long largeReportSize, int maxLargeRunning) {
+    myExecutor = executor;
+    myMaxRunning = Math.max(1, maxRunning);
+    myOrder = order;
+    myLargeReportSize = largeReportSize;
+    myMaxLargeRunning = maxLargeRunning;
+  }
+
+  /**
+   * @param owner tasks of the same owner are queued together
+   * @param size  report size used for ordering and large reports limit
+   */
+  @NotNull
+  public Future<?> submit(@NotNull Object owner, long size, @NotNull Runnable runnable) {
+    return submit(owner, size, size, runnable);
+  }
+
+  /**
+   * @param cost predicted parse cost used for COSTLIEST_FIRST order
+   */
+  @NotNull
+  public Future<?> submit(@NotNull Object owner, long size, long cost, @NotNull Runnable runnable) {
+    final Task task;
+    synchronized (this) {
+      task = new Task(runnable, size, cost, mySequence++);
+      PriorityQueue<Task> queue = myQueues.get(owner);
+      if (queue == null) {
+        queue = new PriorityQueue<Task>(11, getComparator());
+        myQueues.put(owner, queue);
+        myTurns.addLast(owner);
+      }
+      queue.add(task);
+    }
+    dispatch();
+    return task;
+  }
+
+  /**
+   * @return number of tasks waiting to be passed to the executor
+   */
+  public synchronized int getQueuedCount() {
+    int count = 0;
+    for (PriorityQueue<Task> queue : myQueues.values()) {
+      count += queue.size();
+    }
+    return count;
+  }
+
+  private void dispatch() {
+    Task task;
+    while ((task = next()) != null) {
+      try {
+        myExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+        LoggingUtils.LOG.debug("Parse task rejected", e);
+        task.cancel(false);
+        finished(task);
+      }
+    }
+  }
+
+  @NotNull
+  private Comparator<Task> getComparator() {
+    switch (myOrder) {
+      case SMALLEST_FIRST:
+        return BY_SIZE;
+      case COSTLIEST_FIRST:
+        return BY_COST;
+      default:
+        return BY_SEQUENCE;
+    }
+  }
+
+  private synchronized Task next() {
+    if (myRunning >= myMaxRunning) return null;
+    if (myOrder == Order.COSTLIEST_FIRST) return nextCostliest();
+
+    for (int i = myTurns.size(); i > 0; --i) {
+      final Object owner = myTurns.pollFirst();
+      final PriorityQueue<Task> queue = myQueues.get(owner);
+      final Task head = queue.peek();
+
+      final boolean large = isLarge(head);
+      if (large && myMaxLargeRunning > 0 && myLargeRunning >= myMaxLargeRunning) {
+        myTurns.addLast(owner);
+        continue;
+      }
+
+      queue.poll();
+      if (queue.isEmpty()) {
+        myQueues.remove(owner);
+      } else {
+        myTurns.addLast(owner);
+      }
+      ++myRunning;
+      if (large) ++myLargeRunning;
+      return head;
+    }
+    return null;
+  }
+
+  private Task nextCostliest() {
+    Object costliestOwner = null;
+    Task costliest = null;
+    for (Object owner : myTurns) {
+      final Task head = myQueues.get(owner).peek();
+      if (isLarge(head) && myMaxLargeRunning > 0 && myLargeRunning >= myMaxLargeRunning) continue;
+      if (costliest == null || BY_COST.compare(head, costliest) < 0) {
+        costliestOwner = owner;
+        costliest = head;
+      }
+    }
+    if (costliest == null) return null;
+
+    final PriorityQueue<Task> queue = myQueues.get(costliestOwner);
+    queue.poll();
+    if (queue.isEmpty()) {
+      myQueues.remove(costliestOwner);
+      myTurns.remove(costliestOwner);
+    }
+    ++myRunning;
+    if (isLarge(costliest)) ++myLargeRunning;
+    return costliest;
+  }
+
+  private synchronized void finished(@NotNull Task task) {
+    --myRunning;
+    if (isLarge(task)) --myLargeRunning;
+  }
+
+  private boolean isLarge(@NotNull Task task) {
+    return myLargeReportSize > 0 && task.mySize >= myLargeReportSize;
+  }
+
+  private static final Comparator<Task> BY_SEQUENCE = new Comparator<Task>() {
+    public int compare(Task t1, Task t2) {
+      return Long.compare(t1.mySequence, t2.mySequence);
+    }
+  };
+
+  private static final Comparator<Task> BY_SIZE = new Comparator<Task>() {
+    public int compare(Task t1, Task t2) {
+      final int res = Long.compare(t1.mySize, t2.mySize);
+      return res != 0 ? res : Long.compare(t1.mySequence, t2.mySequence);
+    }
+  };
+
+  private static final Comparator<Task> BY_COST = new Comparator<Task>() {
+    public int compare(Task t1, Task t2) {
+      final int res = Long.compare(t2.myCost, t1.myCost);
+      return res != 0 ? res : Long.compare(t1.mySequence, t2.mySequence);
+    }
+  };
+
+  private final class Task extends FutureTask<Object> {
+    private final long mySize;
+    private final long myCost;
+    private final long mySequence;
+
+    private Task(@NotNull Runnable runnable, long size, long cost, long sequence) {
+      super(runnable, null);
+      mySize = size;
+      myCost = cost;
+      mySequence = sequence;
+    }
+
+    @Override
+    public void run() {
+      try {
+        super.run();
+      } finally {
+        finished(this);
+        dispatch();
+      }
+    }
+  }
+}
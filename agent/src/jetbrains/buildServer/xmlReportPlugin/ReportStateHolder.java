@@ -38,12 +38,20 @@ public interface ReportStateHolder {
     * PROCESSED report was successfully processed
     * ERROR report wasn't fully processed due to some problems
     * OUT_OF_DATE report is out-of-date
+    * DUPLICATE report has the same content as another report and was skipped
     */
-    UNKNOWN, ON_PROCESSING, PROCESSED, ERROR, OUT_OF_DATE
+    UNKNOWN, ON_PROCESSING, PROCESSED, ERROR, OUT_OF_DATE, DUPLICATE
   }
 
   @NotNull ReportState getReportState(@NotNull File report);
   @Nullable Long getLastModified(@NotNull File report);
   @Nullable Long getLength(@NotNull File report);
   void setReportState(@NotNull File report, @NotNull ReportState state, long lastModified, long length);
+  @Nullable String getSignature(@NotNull File report);
+  void setSignature(@NotNull File report, @Nullable String signature);
+
+  /**
+   * @return false if the report failed to be processed and the delay before its next processing attempt is not over yet
+   */
+  boolean isRetryDue(@NotNull File report);
 }
@@ -19,11 +19,17 @@ package jetbrains.buildServer.xmlReportPlugin;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import jetbrains.buildServer.agent.FlowLogger;
+import jetbrains.buildServer.xmlReportPlugin.cache.ParseStatistics;
+import jetbrains.buildServer.xmlReportPlugin.cache.PreParsedReports;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -35,6 +41,11 @@ import static jetbrains.buildServer.xmlReportPlugin.ParserFactory.ParsingStage.B
  * Time: 12:59
  */
 public class RulesContext {
+  /**
+   * Parsing stops at the next checkpoint after the build limit is exceeded, a parse which doesn't stop within this time is not waited for
+   */
+  private static final long JOIN_GRACE_MS = 5000;
+
   @NotNull
   private final XmlReportPlugin.RulesData myRulesData;
 
@@ -44,9 +55,19 @@ public class RulesContext {
   @NotNull
   private final Map<ParserFactory.ParsingStage, List<ExecuteTask>> myExecutedTasks = new EnumMap<ParserFactory.ParsingStage, List<ExecuteTask>>(ParserFactory.ParsingStage.class);
 
+  /**
+   * Runtime parse tasks which are not completed yet or failed, successfully completed tasks remove themselves
+   * so that a long build with constantly updated reports doesn't accumulate finished tasks
+   */
+  @NotNull
+  private final Set<CommandTask> myRuntimeTasks = new LinkedHashSet<CommandTask>();
+
   @NotNull
   private MonitorRulesCommand myMonitorRulesCommand;
 
+  @Nullable
+  private PreParsedReports myPreParsedReports;
+
   public RulesContext(@NotNull XmlReportPlugin.RulesData rulesData,
                       @NotNull RulesState rulesState) {
     myRulesData = rulesData;
@@ -56,27 +77,34 @@ public class RulesContext {
     }
   }
 
-  public void addParseTask(@NotNull final ExecutorService executor, @NotNull final ParseReportCommand command) {
-    final ExecuteTask task = new CommandTask(executor, command);
-    final ParserFactory.ParsingStage stage = command.getParsingStage();
-    switch (stage) {
+  public void addParseTask(@NotNull final ParseScheduler scheduler, @NotNull final ParseReportCommand command) {
+    final CommandTask task = new CommandTask(scheduler, command);
+    switch (command.getParsingStage()) {
       case RUNTIME:
+        synchronized (myRuntimeTasks) {
+          myRuntimeTasks.add(task);
+        }
         task.start();
         break;
       case BEFORE_FINISH:
+        myExecutedTasks.get(BEFORE_FINISH).add(task);
         break;
     }
-    myExecutedTasks.get(stage).add(task);
   }
 
-  public void addParseFactory(@NotNull final ParserFactory factory) {
-    myExecutedTasks.get(factory.getParsingStage()).add(new FactoryTask(factory, getRulesData(), getRulesState()));
+  /**
+   * @param scheduler schedules parsing of every report collected at finish
+   * @param flowPerReport whether every report is logged into its own flow, required if the scheduler parses reports concurrently
+   */
+  public void addParseFactory(@NotNull final ParseScheduler scheduler, @NotNull final ParserFactory factory, boolean flowPerReport) {
+    myExecutedTasks.get(factory.getParsingStage()).add(new FactoryTask(scheduler, factory, flowPerReport));
   }
 
   public void finish() throws ExecutionException, InterruptedException {
     for (ExecuteTask task : myExecutedTasks.get(BEFORE_FINISH)) {
       task.start();
     }
+    waitRuntimeParsing();
     for (List<ExecuteTask> tasks : myExecutedTasks.values()) {
       for (ExecuteTask task : tasks) {
         task.join();
@@ -85,13 +113,31 @@ public class RulesContext {
   }
 
   public void waitRuntimeParsing() throws ExecutionException, InterruptedException {
-    for (ExecuteTask task : myExecutedTasks.get(ParserFactory.ParsingStage.RUNTIME)) {
+    for (CommandTask task : getRuntimeTasks()) {
       task.join();
     }
   }
 
   public void clearRuntimeParseTasks() {
-    myExecutedTasks.get(ParserFactory.ParsingStage.RUNTIME).clear();
+    synchronized (myRuntimeTasks) {
+      myRuntimeTasks.clear();
+    }
+  }
+
+  /**
+   * @return runtime parse tasks which are in progress, waiting in the queue or failed
+   */
+  @NotNull
+  private List<CommandTask> getRuntimeTasks() {
+    synchronized (myRuntimeTasks) {
+      return new ArrayList<CommandTask>(myRuntimeTasks);
+    }
+  }
+
+  private void completed(@NotNull CommandTask task) {
+    synchronized (myRuntimeTasks) {
+      myRuntimeTasks.remove(task);
+    }
   }
 
   @Nullable
@@ -103,6 +149,18 @@ public class RulesContext {
     myMonitorRulesCommand = monitorRulesCommand;
   }
 
+  /**
+   * @return reports of the before finish stage parsed in advance or null if they are parsed at finish only
+   */
+  @Nullable
+  public PreParsedReports getPreParsedReports() {
+    return myPreParsedReports;
+  }
+
+  public void setPreParsedReports(@NotNull PreParsedReports preParsedReports) {
+    myPreParsedReports = preParsedReports;
+  }
+
   @NotNull
   public XmlReportPlugin.RulesData getRulesData() {
     return myRulesData;
@@ -119,54 +177,91 @@ public class RulesContext {
     void join() throws ExecutionException, InterruptedException;
   }
 
-  private static class FactoryTask implements ExecuteTask {
+  private class FactoryTask implements ExecuteTask {
 
     @NotNull
-    private final ParserFactory myFactory;
+    private final ParseScheduler myScheduler;
     @NotNull
-    private final XmlReportPlugin.RulesData myRulesData;
+    private final ParserFactory myFactory;
+    private final boolean myFlowPerReport;
     @NotNull
-    private final RulesState myRulesState;
+    private final List<CommandTask> myTasks = new ArrayList<CommandTask>();
 
-    public FactoryTask(@NotNull final ParserFactory factory, @NotNull final XmlReportPlugin.RulesData rulesData, @NotNull final RulesState rulesState) {
+    public FactoryTask(@NotNull final ParseScheduler scheduler, @NotNull final ParserFactory factory, boolean flowPerReport) {
+      myScheduler = scheduler;
       myFactory = factory;
-      myRulesData = rulesData;
-      myRulesState = rulesState;
+      myFlowPerReport = flowPerReport;
     }
 
     @Override
     public void start() {
+      final PreParsedReports preParsedReports = myPreParsedReports;
       for (File file : myRulesData.getMonitorRulesParameters().getRules().collectFiles()) {
-        final ParseReportCommand command = new ParseReportCommand(file, myRulesData.getParseReportParameters(), myRulesState, myFactory);
-        command.run();
+        final FlowLogger flowLogger = myFlowPerReport ? myRulesData.createFlowLogger() : null;
+        final ParseReportCommand command = new ParseReportCommand(file, myRulesData.getParseReportParameters(flowLogger), myRulesState, myFactory, flowLogger, preParsedReports);
+        final CommandTask task = new CommandTask(myScheduler, command);
+        myTasks.add(task);
+        task.start();
       }
     }
 
     @Override
-    public void join() {
+    public void join() throws ExecutionException, InterruptedException {
+      try {
+        for (CommandTask task : myTasks) {
+          task.join();
+        }
+      } finally {
+        final PreParsedReports preParsedReports = myPreParsedReports;
+        if (preParsedReports != null) preParsedReports.clear();
+      }
     }
   }
 
-  private static class CommandTask implements ExecuteTask {
+  private class CommandTask implements ExecuteTask {
     @NotNull private final ParseReportCommand myCommand;
-    @NotNull private final ExecutorService myExecutor;
-    @Nullable private Future<?> myParseTask;
+    @NotNull private final ParseScheduler myScheduler;
+    @Nullable private volatile Future<?> myParseTask;
 
-    public CommandTask(@NotNull final ExecutorService executor, @NotNull final ParseReportCommand command) {
+    public CommandTask(@NotNull final ParseScheduler scheduler, @NotNull final ParseReportCommand command) {
       myCommand = command;
-      myExecutor = executor;
+      myScheduler = scheduler;
     }
 
     @Override
     public void start() {
-      synchronized (myExecutor) {
-        myParseTask = myExecutor.submit(myCommand);
-      }
+      final File file = myCommand.getFile();
+      final Long length = myRulesState.getLength(file);
+      // reports collected at finish weren't monitored, so their length isn't known yet
+      final long size = length == null ? file.length() : length;
+      final ParseStatistics statistics = myRulesData.getParseReportParameters().getParseStatistics();
+      final long cost = statistics == null ? size : statistics.predictCost(file, size);
+      myParseTask = myScheduler.submit(RulesContext.this, size, cost, new Runnable() {
+        public void run() {
+          myCommand.run();
+          // failed tasks are kept to be rethrown on join
+          if (myCommand.getParsingStage() == ParserFactory.ParsingStage.RUNTIME) completed(CommandTask.this);
+        }
+      });
     }
 
     @Override
     public void join() throws ExecutionException, InterruptedException {
-      if (myParseTask != null) myParseTask.get();
+      final Future<?> parseTask = myParseTask;
+      if (parseTask == null) return;
+
+      final long remaining = myRulesData.getParseReportParameters().getParseBudget().getBuildRemainingMs();
+      if (remaining == Long.MAX_VALUE) {
+        parseTask.get();
+        return;
+      }
+      try {
+        parseTask.get(remaining + JOIN_GRACE_MS, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        parseTask.cancel(true);
+        myRulesData.getParseReportParameters().getThreadLogger().warning(
+          "Parsing of " + myCommand.getFile() + " didn't stop after the parsing time limit per build was exceeded, it's not waited for");
+      }
     }
   }
 }
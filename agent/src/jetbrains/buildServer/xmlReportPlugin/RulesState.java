@@ -18,9 +18,15 @@ package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.xmlReportPlugin.utils.PathTable;
+import jetbrains.buildServer.xmlReportPlugin.utils.ReportFingerprint;
+import jetbrains.buildServer.xmlReportPlugin.utils.RetryBackoff;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -28,108 +34,294 @@ import org.jetbrains.annotations.Nullable;
  * User: vbedrosova
  * Date: 20.01.11
  * Time: 16:52
+ *
+ * Reports are stored by their ids in the path table, per report data is kept in parallel arrays,
+ * so that builds with hundreds of thousands of reports don't need an object graph per report.
  */
 public class RulesState implements ReportStateHolder {
+  private static final ReportState[] STATES = ReportState.values();
+
+  @NotNull
+  private final PathTable myPaths = new PathTable();
+
+  @NotNull
+  private long[] myLastModified = new long[16];
+  @NotNull
+  private long[] myLength = new long[16];
+  @NotNull
+  private byte[] myStates = new byte[16];
+  @NotNull
+  private ParsingResult[] myParsingResults = new ParsingResult[16];
+
+  // rarely used data is allocated on demand
+  @Nullable
+  private String[] mySignatures;
+  @Nullable
+  private int[] myFailures;
+  @Nullable
+  private long[] myNextRetryTimes;
+  @NotNull
+  private final Map<Integer, File> myDuplicateOf = new HashMap<Integer, File>();
+
+  /**
+   * Content fingerprint of a processed report to the first processed report with such content,
+   * null if duplicate reports are not detected
+   */
+  @Nullable
+  private final Map<String, File> myFingerprints;
+  /**
+   * Report id to the fingerprint it was processed with
+   */
+  @NotNull
+  private final Map<Integer, String> myProcessedFingerprints = new HashMap<Integer, String>();
+
+  @NotNull
+  private final RetryBackoff myRetryBackoff;
   @NotNull
-  private final Map<File, FileState> myParsingResults = new HashMap<File, FileState>();
+  private final AtomicLong myRetriesAvoided = new AtomicLong();
+  /**
+   * Ids of reports which were postponed during their current retry delay, each delay is counted once
+   */
+  @NotNull
+  private final BitSet myRetryPostponed = new BitSet();
+
+  /**
+   * Accumulates results of processed reports which are not kept per report, null if all results are kept
+   */
+  @Nullable
+  private final ParsingResult myProcessedSummary;
+  private int mySummarizedCount;
+
+  public RulesState() {
+    this(false);
+  }
+
+  /**
+   * @param detectDuplicates whether to skip reports with the same content as an already parsed one
+   */
+  public RulesState(boolean detectDuplicates) {
+    this(detectDuplicates, RetryBackoff.NONE);
+  }
+
+  /**
+   * @param retryBackoff delays between processing attempts of a report which keeps failing
+   */
+  public RulesState(boolean detectDuplicates, @NotNull RetryBackoff retryBackoff) {
+    this(detectDuplicates, retryBackoff, null);
+  }
+
+  /**
+   * @param processedSummary empty result to accumulate results of processed reports into instead of keeping them per report,
+   *                         suitable only when processed reports are never parsed again, null to keep all results
+   */
+  public RulesState(boolean detectDuplicates, @NotNull RetryBackoff retryBackoff, @Nullable ParsingResult processedSummary) {
+    myFingerprints = detectDuplicates ? new HashMap<String, File>() : null;
+    myRetryBackoff = retryBackoff;
+    myProcessedSummary = processedSummary;
+  }
+
+  /**
+   * Checks whether the report has the same content as one of the processed reports.
+   * Fingerprints are taken when reports are processed, so a report which was incomplete when its parsing started
+   * is compared by its final content. A duplicate report gets DUPLICATE state.
+   *
+   * @return the report with the same content or null if the report is not a duplicate or duplicates are not detected
+   */
+  @Nullable
+  public File checkDuplicate(@NotNull final File report) {
+    if (myFingerprints == null) return null;
+
+    final String fingerprint = ReportFingerprint.compute(report);
+    if (fingerprint == null) return null;
+
+    synchronized (this) {
+      final File original = myFingerprints.get(fingerprint);
+      if (original == null || original.equals(report)) return null;
+
+      myDuplicateOf.put(setReportStateImpl(report, ReportState.DUPLICATE, null), original);
+      return original;
+    }
+  }
 
   @NotNull
   public synchronized ReportState getReportState(@NotNull final File report) {
-    FileState store = myParsingResults.get(report);
-    return store != null ? store.reportState : ReportState.UNKNOWN;
+    final int id = myPaths.find(report.getPath());
+    return id != PathTable.NOT_FOUND ? STATES[myStates[id]] : ReportState.UNKNOWN;
   }
 
   @Nullable
   public synchronized Long getLastModified(@NotNull final File report) {
-    FileState store = myParsingResults.get(report);
-    return store != null ? store.lastModified : null;
+    final int id = myPaths.find(report.getPath());
+    return id != PathTable.NOT_FOUND ? myLastModified[id] : null;
   }
 
   @Nullable
   public synchronized Long getLength(@NotNull final File report) {
-    FileState store = myParsingResults.get(report);
-    return store != null ? store.length : null;
+    final int id = myPaths.find(report.getPath());
+    return id != PathTable.NOT_FOUND ? myLength[id] : null;
   }
 
-  public synchronized void setReportState(@NotNull final File report, @NotNull final ReportState state, @Nullable ParsingResult parsingResult) {
-    FileState fileState = myParsingResults.get(report);
-    if (fileState == null) {
-      fileState = new FileState(report.lastModified(), report.length());
-      myParsingResults.put(report, fileState);
+  @Nullable
+  public synchronized String getSignature(@NotNull final File report) {
+    final int id = myPaths.find(report.getPath());
+    return id != PathTable.NOT_FOUND && mySignatures != null ? mySignatures[id] : null;
+  }
+
+  public synchronized void setSignature(@NotNull final File report, @Nullable final String signature) {
+    final int id = myPaths.find(report.getPath());
+    if (id == PathTable.NOT_FOUND || signature == null && mySignatures == null) return;
+    if (mySignatures == null) mySignatures = new String[myStates.length];
+    mySignatures[id] = signature;
+  }
+
+  public void setReportState(@NotNull final File report, @NotNull final ReportState state, @Nullable ParsingResult parsingResult) {
+    // computed outside of the lock as it reads the whole report
+    final String fingerprint = myFingerprints != null && state == ReportState.PROCESSED ? ReportFingerprint.compute(report) : null;
+    synchronized (this) {
+      final int id = setReportStateImpl(report, state, parsingResult);
+      if (myFingerprints != null && state == ReportState.PROCESSED) rememberFingerprint(id, report, fingerprint);
     }
-    fileState.reportState = state;
-    fileState.parsingResult = parsingResult;
   }
 
-  public synchronized void setReportState(@NotNull final File report, @NotNull final ReportState state, final long lastModified, final long length) {
-    FileState fileState = myParsingResults.get(report);
-    if (fileState == null) {
-      fileState = new FileState(lastModified, length);
-      myParsingResults.put(report, fileState);
+  private void rememberFingerprint(final int id, @NotNull final File report, @Nullable final String fingerprint) {
+    assert myFingerprints != null;
+    final String prev = fingerprint == null ? myProcessedFingerprints.remove(id) : myProcessedFingerprints.put(id, fingerprint);
+    if (prev != null && report.equals(myFingerprints.get(prev))) myFingerprints.remove(prev);
+    if (fingerprint != null && !myFingerprints.containsKey(fingerprint)) myFingerprints.put(fingerprint, report);
+  }
+
+  private int setReportStateImpl(@NotNull final File report, @NotNull final ReportState state, @Nullable ParsingResult parsingResult) {
+    int id = myPaths.find(report.getPath());
+    if (id == PathTable.NOT_FOUND) id = add(report, report.lastModified(), report.length());
+    myStates[id] = (byte)state.ordinal();
+    myParsingResults[id] = parsingResult;
+
+    if (state == ReportState.ERROR) {
+      if (myFailures == null || myNextRetryTimes == null) {
+        myFailures = new int[myStates.length];
+        myNextRetryTimes = new long[myStates.length];
+      }
+      myNextRetryTimes[id] = System.currentTimeMillis() + myRetryBackoff.getDelay(++myFailures[id]);
+      myRetryPostponed.clear(id);
+    } else if (state == ReportState.PROCESSED) {
+      if (myFailures != null && myNextRetryTimes != null) {
+        myFailures[id] = 0;
+        myNextRetryTimes[id] = 0;
+      }
+      if (myProcessedSummary != null && parsingResult != null) {
+        myProcessedSummary.accumulate(parsingResult);
+        myParsingResults[id] = null;
+        ++mySummarizedCount;
+      }
     }
-    fileState.reportState = state;
-    fileState.lastModified = lastModified;
-    fileState.length = length;
+    return id;
+  }
+
+  public synchronized boolean isRetryDue(@NotNull final File report) {
+    final int id = myPaths.find(report.getPath());
+    final boolean due = id == PathTable.NOT_FOUND || myNextRetryTimes == null || myNextRetryTimes[id] <= System.currentTimeMillis();
+    if (!due && !myRetryPostponed.get(id)) {
+      myRetryPostponed.set(id);
+      myRetriesAvoided.incrementAndGet();
+    }
+    return due;
+  }
+
+  /**
+   * @return number of retry delays during which a changed report was not processed again, counted once per report and delay
+   */
+  public long getRetriesAvoided() {
+    return myRetriesAvoided.get();
+  }
+
+  public synchronized void setReportState(@NotNull final File report, @NotNull final ReportState state, final long lastModified, final long length) {
+    int id = myPaths.find(report.getPath());
+    if (id == PathTable.NOT_FOUND) id = add(report, lastModified, length);
+    myStates[id] = (byte)state.ordinal();
+    myLastModified[id] = lastModified;
+    myLength[id] = length;
   }
 
+  private int add(@NotNull final File report, final long lastModified, final long length) {
+    final int id = myPaths.add(report.getPath());
+    if (id == myStates.length) {
+      final int capacity = id * 2;
+      myLastModified = Arrays.copyOf(myLastModified, capacity);
+      myLength = Arrays.copyOf(myLength, capacity);
+      myStates = Arrays.copyOf(myStates, capacity);
+      myParsingResults = Arrays.copyOf(myParsingResults, capacity);
+      if (mySignatures != null) mySignatures = Arrays.copyOf(mySignatures, capacity);
+      if (myFailures != null) myFailures = Arrays.copyOf(myFailures, capacity);
+      if (myNextRetryTimes != null) myNextRetryTimes = Arrays.copyOf(myNextRetryTimes, capacity);
+    }
+    myLastModified[id] = lastModified;
+    myLength[id] = length;
+    myStates[id] = (byte)ReportState.UNKNOWN.ordinal();
+    return id;
+  }
 
   @Nullable
   public synchronized ParsingResult getParsingResult(@NotNull File report) {
-    final FileState state = myParsingResults.get(report);
-    return state == null ? null : state.parsingResult;
+    final int id = myPaths.find(report.getPath());
+    return id == PathTable.NOT_FOUND ? null : myParsingResults[id];
   }
 
+  /**
+   * @return processed reports mapped to their parsing results, the results are null for reports accumulated into the summary
+   * @see #getProcessedSummary()
+   */
   @NotNull
   public synchronized Map<File, ParsingResult> getProcessedFiles() {
     final Map<File, ParsingResult> res = new HashMap<File, ParsingResult>();
-    for (Map.Entry<File, FileState> e : myParsingResults.entrySet()) {
-      final File key = e.getKey();
-      final FileState value = e.getValue();
-
-      if (value.reportState == ReportState.PROCESSED) {
-        res.put(key, value.parsingResult);
+    for (int id = 0; id < myPaths.size(); ++id) {
+      if (myStates[id] == ReportState.PROCESSED.ordinal()) {
+        res.put(new File(myPaths.getPath(id)), myParsingResults[id]);
       }
     }
     return res;
   }
 
+  /**
+   * @return accumulated results of processed reports which are not kept per report or null if there are no such reports
+   */
+  @Nullable
+  public synchronized ParsingResult getProcessedSummary() {
+    return mySummarizedCount > 0 ? myProcessedSummary : null;
+  }
+
   @NotNull
   public synchronized Map<File, ParsingResult> getFailedToProcessFiles() {
     final Map<File, ParsingResult> res = new HashMap<File, ParsingResult>();
-    for (Map.Entry<File, FileState> e : myParsingResults.entrySet()) {
-      final File key = e.getKey();
-      final FileState value = e.getValue();
-
-      if (value.reportState == ReportState.ERROR) {
-        res.put(key, value.parsingResult);
+    for (int id = 0; id < myPaths.size(); ++id) {
+      if (myStates[id] == ReportState.ERROR.ordinal()) {
+        res.put(new File(myPaths.getPath(id)), myParsingResults[id]);
       }
     }
     return res;
   }
 
+  /**
+   * @return duplicate reports mapped to the reports with the same content
+   */
   @NotNull
-  public synchronized List<File> getOutOfDateFiles() {
-    final List<File> res = new ArrayList<File>();
-    for (Map.Entry<File, FileState> e : myParsingResults.entrySet()) {
-      final File key = e.getKey();
-      final FileState value = e.getValue();
-
-      if (value.reportState == ReportState.OUT_OF_DATE) {
-        res.add(key);
+  public synchronized Map<File, File> getDuplicateFiles() {
+    final Map<File, File> res = new HashMap<File, File>();
+    for (int id = 0; id < myPaths.size(); ++id) {
+      if (myStates[id] == ReportState.DUPLICATE.ordinal()) {
+        res.put(new File(myPaths.getPath(id)), myDuplicateOf.get(id));
       }
     }
     return res;
   }
 
-  private static final class FileState {
-    @Nullable private Long lastModified;
-    @Nullable private Long length;
-    @Nullable private ParsingResult parsingResult;
-    private ReportState reportState = ReportState.UNKNOWN;
-
-    private FileState(long lastModified, long length) {
-      this.lastModified = lastModified;
-      this.length = length;
+  @NotNull
+  public synchronized List<File> getOutOfDateFiles() {
+    final List<File> res = new ArrayList<File>();
+    for (int id = 0; id < myPaths.size(); ++id) {
+      if (myStates[id] == ReportState.OUT_OF_DATE.ordinal()) {
+        res.add(new File(myPaths.getPath(id)));
+      }
     }
+    return res;
   }
 }
@@ -34,6 +34,25 @@ import org.jetbrains.annotations.Nullable;
 //starts watching somedir directory for pmd reports, build will fail if some report has
 //more than errorLimit errors or more than warningLimit warnings
 
+//"##teamcity[importData type='pmd' file='somedir' errorLimit='100' failFast='true']"
+//does the same and stops reporting inspections as soon as one of the limits is exceeded
+
+//"##teamcity[importData type='junit' file='somedir' passedTestOutputLimit='1000']"
+//reports at most 1000 characters of output for each passed test, failed and ignored tests get full output
+
+//"##teamcity[importData type='junit' file='somedir' stackTraceReferences='true']"
+//reports a stack trace repeated by several failed tests as "same as <first test>"
+
+//"##teamcity[importData type='junit' file='somedir' skipDuplicates='true']"
+//skips reports with the same content as an already parsed report of this type, e.g. copies of report directories
+
+//"##teamcity[importData type='junit' file='reports.txt' manifest='true']"
+//reads paths of completed reports from reports.txt manifest file as they are appended instead of scanning directories
+
+//"##teamcity[importData type='junit' file='somedir' readyPolicy='marker']"
+//parses a report only when its writer is done: marker[:suffix] waits for report.xml.done file,
+//stableSize[:runs] waits until the report size doesn't change, lock waits until the report can be locked
+
 //"##teamcity[importData type='findBugs' file='somedir' findBugsHome='somepath']"
 //starts watching somedir directory for findBugs reports, findBugs report processor needs findBugsHome
 //attribute
@@ -43,6 +62,12 @@ public abstract class XmlReportDataProcessor implements BuildStepDataProcessor {
   public static final String PARSE_OUT_OF_DATE_ARGUMENT = "parseOutOfDate";
   public static final String ERRORS_LIMIT_ARGUMENT = "errorLimit";
   public static final String WARNINGS_LIMIT_ARGUMENT = "warningLimit";
+  public static final String FAIL_FAST_ARGUMENT = "failFast";
+  public static final String PASSED_TEST_OUTPUT_LIMIT_ARGUMENT = "passedTestOutputLimit";
+  public static final String STACK_TRACE_REFERENCES_ARGUMENT = "stackTraceReferences";
+  public static final String SKIP_DUPLICATES_ARGUMENT = "skipDuplicates";
+  public static final String MANIFEST_ARGUMENT = "manifest";
+  public static final String READY_POLICY_ARGUMENT = "readyPolicy";
   public static final String FINDBUGS_HOME_ARGUMENT = "findBugsHome";
   public static final String FAIL_BUILD_IF_PARSING_FAILED = "failBuildIfParsingFailed";
   public static final String WHEN_NO_DATA_PUBLISHED_ARGUMENT = "whenNoDataPublished";
@@ -71,6 +96,12 @@ public abstract class XmlReportDataProcessor implements BuildStepDataProcessor {
     params.put(XmlReportPluginConstants.LOG_AS_INTERNAL, getOrDefault(arguments, LOG_AS_INTERNAL_ARGUMENT, null));
     params.put(XmlReportPluginConstants.MAX_ERRORS, getOrDefault(arguments, ERRORS_LIMIT_ARGUMENT, null));
     params.put(XmlReportPluginConstants.MAX_WARNINGS, getOrDefault(arguments, WARNINGS_LIMIT_ARGUMENT, null));
+    params.put(XmlReportPluginConstants.FAIL_FAST_INSPECTIONS, getOrDefault(arguments, FAIL_FAST_ARGUMENT, "false"));
+    params.put(XmlReportPluginConstants.PASSED_TEST_OUTPUT_LIMIT, getOrDefault(arguments, PASSED_TEST_OUTPUT_LIMIT_ARGUMENT, null));
+    params.put(XmlReportPluginConstants.STACK_TRACE_REFERENCES, getOrDefault(arguments, STACK_TRACE_REFERENCES_ARGUMENT, "false"));
+    params.put(XmlReportPluginConstants.SKIP_DUPLICATES, getOrDefault(arguments, SKIP_DUPLICATES_ARGUMENT, "false"));
+    params.put(XmlReportPluginConstants.REPORT_MANIFEST, getOrDefault(arguments, MANIFEST_ARGUMENT, "false"));
+    params.put(XmlReportPluginConstants.READY_POLICY, getOrDefault(arguments, READY_POLICY_ARGUMENT, null));
     return params;
   }
 
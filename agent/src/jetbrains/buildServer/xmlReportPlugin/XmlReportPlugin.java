@@ -20,25 +20,41 @@ import java.io.File;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import jetbrains.buildServer.BuildProblemData;
 import jetbrains.buildServer.ExtensionsProvider;
 import jetbrains.buildServer.agent.*;
 import jetbrains.buildServer.agent.duplicates.DuplicatesReporter;
 import jetbrains.buildServer.agent.impl.MessageTweakingSupport;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.util.*;
 import jetbrains.buildServer.util.executors.ExecutorsFactory;
 import jetbrains.buildServer.util.impl.Lazy;
 import jetbrains.buildServer.util.positioning.PositionAware;
 import jetbrains.buildServer.util.positioning.PositionConstraint;
+import jetbrains.buildServer.xmlReportPlugin.cache.ParseStatistics;
+import jetbrains.buildServer.xmlReportPlugin.cache.PreParsedReports;
+import jetbrains.buildServer.xmlReportPlugin.cache.ReportCache;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.TeamCityDuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
 import jetbrains.buildServer.xmlReportPlugin.inspections.TeamCityInspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.ready.ReportReadyPolicies;
+import jetbrains.buildServer.xmlReportPlugin.ready.AdaptiveStagePolicy;
+import jetbrains.buildServer.xmlReportPlugin.ready.ReportReadyPolicy;
+import jetbrains.buildServer.xmlReportPlugin.tests.PassedTestOutputLimiter;
+import jetbrains.buildServer.xmlReportPlugin.tests.StackTraceCache;
+import jetbrains.buildServer.xmlReportPlugin.tests.StackTraceDeduplicator;
 import jetbrains.buildServer.xmlReportPlugin.tests.TeamCityTestReporter;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.ReportFingerprint;
+import jetbrains.buildServer.xmlReportPlugin.utils.RetryBackoff;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -48,6 +64,25 @@ import static jetbrains.buildServer.xmlReportPlugin.XmlReportPluginUtil.*;
 
 public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProcessor, PositionAware {
   private static final Pattern SPLIT_RULES = Pattern.compile(XmlReportPluginConstants.SPLIT_REGEX);
+  private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+  private static final String TEST_PARSE_THREADS_PROPERTY = "teamcity.xmlReportParsing.testParseThreads";
+  private static final String FINISH_PARSE_THREADS_PROPERTY = "teamcity.xmlReportParsing.finishParseThreads";
+  private static final String FLOW_ID_PREFIX = "xmlReport-";
+  private static final String SIGNATURE_DEPTH_KB_PROPERTY = "teamcity.xmlReportParsing.signature.depthKb";
+  private static final String CACHE_ENABLED_PROPERTY = "teamcity.xmlReportParsing.cache.enabled";
+  private static final String CACHE_MAX_SIZE_MB_PROPERTY = "teamcity.xmlReportParsing.cache.maxSizeMb";
+  private static final String SCAN_THREADS_PROPERTY = "teamcity.xmlReportParsing.scanThreads";
+  private static final String RETRY_BASE_DELAY_PROPERTY = "teamcity.xmlReportParsing.retry.baseDelayMs";
+  private static final String RETRY_MAX_DELAY_PROPERTY = "teamcity.xmlReportParsing.retry.maxDelayMs";
+  private static final String SMALLEST_FIRST_PROPERTY = "teamcity.xmlReportParsing.schedule.smallestFirst";
+  private static final String LARGE_REPORT_MB_PROPERTY = "teamcity.xmlReportParsing.schedule.largeReportMb";
+  private static final String MAX_LARGE_PARSES_PROPERTY = "teamcity.xmlReportParsing.schedule.maxLargeParses";
+  private static final String COST_MODEL_PROPERTY = "teamcity.xmlReportParsing.schedule.costModel";
+  private static final String REPORT_TIMEOUT_PROPERTY = "teamcity.xmlReportParsing.timeout.reportSec";
+  private static final String BUILD_TIMEOUT_PROPERTY = "teamcity.xmlReportParsing.timeout.buildSec";
+  private static final String PRE_PARSE_PROPERTY = "teamcity.xmlReportParsing.preParse.enabled";
+  private static final String PRE_PARSE_STABLE_SEC_PROPERTY = "teamcity.xmlReportParsing.preParse.stableSec";
+  private static final String PRE_PARSE_MAX_SIZE_MB_PROPERTY = "teamcity.xmlReportParsing.preParse.maxSizeMb";
   @NotNull
   private final jetbrains.buildServer.agent.inspections.InspectionReporter myInspectionReporter;
   @NotNull
@@ -60,6 +95,39 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   @NotNull
   private final ExecutorService myParseExecutor;
 
+  /**
+   * Parses test reports concurrently, each report is logged into its own flow.
+   * Same as myParseExecutor if concurrent parsing is disabled
+   */
+  @NotNull
+  private final ExecutorService myTestParseExecutor;
+
+  /**
+   * Parses inspection reports of the before finish stage concurrently, each report is logged into its own flow.
+   * Same as myParseExecutor if concurrent parsing is disabled
+   */
+  @NotNull
+  private final ExecutorService myFinishParseExecutor;
+
+  /**
+   * Order parse tasks of all rules contexts before they get to the executors
+   */
+  @NotNull
+  private final ParseScheduler myParseScheduler;
+  @NotNull
+  private final ParseScheduler myTestParseScheduler;
+  @NotNull
+  private final ParseScheduler myFinishParseScheduler;
+
+  /**
+   * Walks directories of include/exclude rules in parallel, null if rules are walked in the monitoring thread
+   */
+  @Nullable
+  private final ForkJoinPool myScanPool;
+
+  @NotNull
+  private final AtomicLong myFlowCounter = new AtomicLong();
+
   @NotNull
   private final Lazy<Map<String, ParserFactory>> myParserFactoryMap = new Lazy<Map<String, ParserFactory>>() {
     @NotNull
@@ -76,6 +144,21 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
   @NotNull private final BuildAgentConfiguration myConfiguration;
 
+  @Nullable
+  private volatile ReportCache myReportCache;
+
+  /**
+   * Parse statistics of the current build configuration, null if reports are not ordered by predicted cost
+   */
+  @Nullable
+  private volatile ParseStatistics myParseStatistics;
+
+  /**
+   * Parsing time limits of the current build
+   */
+  @NotNull
+  private volatile ParseBudget myParseBudget = ParseBudget.UNLIMITED;
+
   @Nullable
   private ProcessingContext myBuildProcessingContext;
 
@@ -97,11 +180,38 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     myDuplicatesReporter = duplicatesReporter;
 
     myParseExecutor = createExecutor();
+
+    final int testParseThreads = TeamCityProperties.getInteger(TEST_PARSE_THREADS_PROPERTY, 1);
+    myTestParseExecutor = testParseThreads > 1 ? ExecutorsFactory.newFixedDaemonExecutor("xml-report-plugin-tests", testParseThreads) : myParseExecutor;
+    final int finishParseThreads = TeamCityProperties.getInteger(FINISH_PARSE_THREADS_PROPERTY, 1);
+    myFinishParseExecutor = finishParseThreads > 1 ? ExecutorsFactory.newFixedDaemonExecutor("xml-report-plugin-finish", finishParseThreads) : myParseExecutor;
+
+    final ParseScheduler.Order order = TeamCityProperties.getBoolean(COST_MODEL_PROPERTY)
+                                       ? ParseScheduler.Order.COSTLIEST_FIRST
+                                       : TeamCityProperties.getBoolean(SMALLEST_FIRST_PROPERTY) ? ParseScheduler.Order.SMALLEST_FIRST : ParseScheduler.Order.SUBMISSION;
+    final long largeReportSize = TeamCityProperties.getInteger(LARGE_REPORT_MB_PROPERTY, 100) * 1024L * 1024L;
+    final int maxLargeParses = TeamCityProperties.getInteger(MAX_LARGE_PARSES_PROPERTY, 0);
+    myParseScheduler = new ParseScheduler(myParseExecutor, 1, order, largeReportSize, maxLargeParses);
+    myTestParseScheduler = myTestParseExecutor == myParseExecutor
+                           ? myParseScheduler
+                           : new ParseScheduler(myTestParseExecutor, testParseThreads, order, largeReportSize, maxLargeParses);
+    myFinishParseScheduler = myFinishParseExecutor == myParseExecutor
+                             ? myParseScheduler
+                             : new ParseScheduler(myFinishParseExecutor, finishParseThreads, order, largeReportSize, maxLargeParses);
+
+    final int scanThreads = TeamCityProperties.getInteger(SCAN_THREADS_PROPERTY, 1);
+    myScanPool = scanThreads > 1 ? new ForkJoinPool(scanThreads) : null;
   }
 
   @Override
   public void buildStarted(@NotNull AgentRunningBuild runningBuild) {
     myBuild = runningBuild;
+    myReportCache = createReportCache();
+    myParseStatistics = TeamCityProperties.getBoolean(COST_MODEL_PROPERTY)
+                        ? ParseStatistics.load(getParseStatisticsFile(runningBuild), runningBuild.getCheckoutDirectory())
+                        : null;
+    myParseBudget = new ParseBudget(TeamCityProperties.getInteger(REPORT_TIMEOUT_PROPERTY, 0) * 1000L,
+                                    TeamCityProperties.getInteger(BUILD_TIMEOUT_PROPERTY, 0) * 1000L);
     initBuildProcessingContext(runningBuild);
   }
 
@@ -181,6 +291,10 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   public void beforeBuildFinish(@NotNull final AgentRunningBuild build, @NotNull final BuildFinishedStatus buildStatus) {
     if (myBuildProcessingContext == null) return;
     finishProcessing(getBuildProcessingContext(), true);
+    if (myParseStatistics != null) {
+      myParseStatistics.save(getParseStatisticsFile(build));
+      myParseStatistics = null;
+    }
     myBuild = null;
     myBuildProcessingContext = null;
   }
@@ -188,16 +302,49 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   @Override
   public void agentShutdown() {
     shutdownExecutor(myParseExecutor);
+    if (myTestParseExecutor != myParseExecutor) shutdownExecutor(myTestParseExecutor);
+    if (myFinishParseExecutor != myParseExecutor) shutdownExecutor(myFinishParseExecutor);
+    if (myScanPool != null) myScanPool.shutdownNow();
+  }
+
+  @Nullable
+  private ReportCache createReportCache() {
+    if (!TeamCityProperties.getBoolean(CACHE_ENABLED_PROPERTY)) return null;
+    if (myReportCache != null) return myReportCache;
+    final long maxSize = TeamCityProperties.getInteger(CACHE_MAX_SIZE_MB_PROPERTY, 100) * 1024L * 1024L;
+    return new ReportCache(myConfiguration.getCacheDirectory("xmlReportParsing"), maxSize);
+  }
+
+  /**
+   * Statistics are kept per build configuration, reports of different configurations have nothing in common
+   */
+  @NotNull
+  private File getParseStatisticsFile(@NotNull AgentRunningBuild build) {
+    return new File(myConfiguration.getCacheDirectory("xmlReportParsing"), "statistics/" + ReportFingerprint.hash(build.getBuildTypeId()) + ".stats");
   }
 
   private RulesContext createRulesContext(@NotNull final RulesData rulesData) {
-    final RulesState fileStateHolder = new RulesState();
+    final RetryBackoff retryBackoff = new RetryBackoff(TeamCityProperties.getInteger(RETRY_BASE_DELAY_PROPERTY, 1000),
+                                                       TeamCityProperties.getInteger(RETRY_MAX_DELAY_PROPERTY, 30000));
     final ParserFactory parserFactory = getParserFactory(rulesData.getType());
+    // results of processed reports are needed per report only to continue parsing of updated reports
+    final ParsingResult processedSummary = rulesData.getMonitorRulesParameters().isReparseUpdated() ? null : parserFactory.createEmptyResult();
+    final RulesState fileStateHolder = new RulesState(rulesData.isSkipDuplicates(), retryBackoff, processedSummary);
 
     final RulesContext rulesContext = new RulesContext(rulesData, fileStateHolder);
     switch (parserFactory.getParsingStage()) {
       case BEFORE_FINISH:
-        rulesContext.addParseFactory(parserFactory);
+        // duplicates reports of one build share a single start/finish bracket of the duplicates reporter, so they are parsed one by one
+        if (myFinishParseExecutor != myParseExecutor && isInspectionType(rulesData.getType())) {
+          rulesContext.addParseFactory(myFinishParseScheduler, parserFactory, true);
+        } else {
+          rulesContext.addParseFactory(myParseScheduler, parserFactory, false);
+        }
+        if (TeamCityProperties.getBoolean(PRE_PARSE_PROPERTY) && PreParsedReports.isSupported(rulesData.getParseReportParameters())) {
+          rulesContext.setPreParsedReports(new PreParsedReports(parserFactory, rulesData.getParseReportParameters(), myParseScheduler, rulesContext,
+                                                                TeamCityProperties.getInteger(PRE_PARSE_STABLE_SEC_PROPERTY, 10) * 1000L,
+                                                                TeamCityProperties.getInteger(PRE_PARSE_MAX_SIZE_MB_PROPERTY, 64) * 1024L * 1024L));
+        }
         break;
       case RUNTIME:
         rulesContext.setMonitorRulesCommand(new MonitorRulesCommand(rulesData.getMonitorRulesParameters(), rulesContext.getRulesState(), myQuietMode,
@@ -246,6 +393,8 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     for (RulesContext rulesContext : processingContext.rulesContexts) {
       final MonitorRulesCommand monitorRules = rulesContext.getMonitorRulesCommand();
       if (monitorRules != null) monitorRules.run();
+      final PreParsedReports preParsedReports = rulesContext.getPreParsedReports();
+      if (preParsedReports != null) preParsedReports.update(rulesContext.getRulesData().getMonitorRulesParameters().getRules());
     }
   }
 
@@ -271,7 +420,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
         rulesContext.clearRuntimeParseTasks();
 
         final MonitorRulesCommand monitorRules = rulesContext.getMonitorRulesCommand();
-        if (monitorRules != null) monitorRules.run();
+        if (monitorRules != null) monitorRules.run(true);
         if (fullFinish) rulesContext.finish();
         else rulesContext.waitRuntimeParsing();
 
@@ -283,8 +432,16 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   }
 
   private void submitParsing(@NotNull File file, @NotNull final RulesContext rulesContext, @NotNull ParserFactory parserFactory) {
-    final ParseReportCommand parseReportCommand = new ParseReportCommand(file, rulesContext.getRulesData().getParseReportParameters(), rulesContext.getRulesState(), parserFactory);
-    rulesContext.addParseTask(myParseExecutor, parseReportCommand);
+    final RulesData rulesData = rulesContext.getRulesData();
+    if (myTestParseExecutor != myParseExecutor && isTestType(rulesData.getType())) {
+      // test reports parsed concurrently must not share a flow, otherwise their suites interleave
+      final FlowLogger flowLogger = rulesData.createFlowLogger();
+      final ParseReportCommand parseReportCommand = new ParseReportCommand(file, rulesData.getParseReportParameters(flowLogger), rulesContext.getRulesState(), parserFactory, flowLogger);
+      rulesContext.addParseTask(myTestParseScheduler, parseReportCommand);
+      return;
+    }
+    final ParseReportCommand parseReportCommand = new ParseReportCommand(file, rulesData.getParseReportParameters(), rulesContext.getRulesState(), parserFactory);
+    rulesContext.addParseTask(myParseScheduler, parseReportCommand);
   }
 
   private void shutdownExecutor(@NotNull ExecutorService executor) {
@@ -316,13 +473,17 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
   @SuppressWarnings("ConstantConditions")
   private Rules getRules(@NotNull Map<String, String> parameters) {
-    return getRules(getXmlReportPaths(parameters));
+    return getRules(null, parameters);
   }
 
   @NotNull
   @SuppressWarnings("ConstantConditions")
   private Rules getRules(@Nullable File rulesFile, @NotNull Map<String, String> parameters) {
     final String rulesStr = rulesFile == null ? getXmlReportPaths(parameters) : rulesFile.getAbsolutePath();
+    if (isReportManifest(parameters)) {
+      final File baseDir = getBuild().getCheckoutDirectory();
+      return new ManifestRules(new File(resolveRule(rulesStr.trim(), baseDir)), baseDir);
+    }
     return getRules(rulesStr);
   }
 
@@ -338,7 +499,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
       }
     }
 
-    return new OptimizingIncludeExcludeRules(baseDir, rules);
+    return new OptimizingIncludeExcludeRules(baseDir, rules, myScanPool);
   }
 
   @NotNull
@@ -350,7 +511,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
   }
 
   private boolean isFilePath(@NotNull String rule) {
-    return !new AntPathMatcher().isPattern(rule);
+    return !PATH_MATCHER.isPattern(rule);
   }
 
   private void logStatistics(@NotNull final RulesContext rulesContext) {
@@ -359,6 +520,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     final Map<File, ParsingResult> succeeded = rulesContext.getRulesState().getProcessedFiles();
     final Map<File, ParsingResult> failedToParse = rulesContext.getRulesState().getFailedToProcessFiles();
     final List<File> outOfDate = rulesContext.getRulesState().getOutOfDateFiles();
+    final Map<File, File> duplicates = rulesContext.getRulesState().getDuplicateFiles();
 
     final int processedFileCount = succeeded.size() + failedToParse.size();
 
@@ -368,7 +530,7 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
     LoggingUtils.logInTarget(LoggingUtils.getTypeDisplayName(rulesContext.getRulesData().getType()) + " report watcher",
       new Runnable() {
         public void run() {
-          final int totalFileCount = processedFileCount + outOfDate.size();
+          final int totalFileCount = processedFileCount + outOfDate.size() + duplicates.size();
           summaryLogAction.doLogAction(
             totalFileCount == 0
             ? "No reports found for paths:"
@@ -392,6 +554,14 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
                                          LoggingUtils
                                            .error("Failed to parse " + failedToParse.size() + " " + StringUtil.pluralize("report", failedToParse.size()), logger);
 
+                                         int timedOut = 0;
+                                         for (ParsingResult parsingResult : failedToParse.values()) {
+                                           if (getProblem(parsingResult) instanceof ParseTimeoutException) ++timedOut;
+                                         }
+                                         if (timedOut > 0) {
+                                           LoggingUtils.error(timedOut + " " + StringUtil.pluralize("report", timedOut) + " timed out, partially parsed results are kept", logger);
+                                         }
+
                                          for (Map.Entry<File, ParsingResult> parsedFile : failedToParse.entrySet()) {
                                            final ParsingResult parsingResult = parsedFile.getValue();
                                            final File file = parsedFile.getKey();
@@ -426,13 +596,17 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
                                            final String path = getPathInCheckoutDir(file);
 
-                                           if (rulesContext.getRulesData().isVerbose() || succeeded.size() == 1) {
+                                           if (parsingResult instanceof InspectionParsingResult && ((InspectionParsingResult)parsingResult).isTruncated()) {
+                                             LoggingUtils.warn(path + ": parsing stopped as inspection limits were exceeded, results are partial", logger);
+                                           } else if (rulesContext.getRulesData().isVerbose() || succeeded.size() == 1) {
                                              LoggingUtils.message(path, logger);
                                            } else {
                                              LoggingUtils.LOG.debug(path);
                                            }
-                                           result.accumulate(parsingResult);
+                                           if (parsingResult != null) result.accumulate(parsingResult);
                                          }
+                                         final ParsingResult processedSummary = rulesContext.getRulesState().getProcessedSummary();
+                                         if (processedSummary != null) result.accumulate(processedSummary);
                                        }
                                      }, logger);
           }
@@ -457,6 +631,50 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
               }
             }, logger);
           }
+          if (!duplicates.isEmpty()) {
+            LoggingUtils.logInTarget("Skipped as duplicates", new Runnable() {
+              public void run() {
+                LoggingUtils.message(duplicates.size() + " " + StringUtil.pluralize("report", duplicates.size()), logger);
+
+                for (Map.Entry<File, File> duplicate : duplicates.entrySet()) {
+                  final String details = getPathInCheckoutDir(duplicate.getKey()) + " has the same content as " + getPathInCheckoutDir(duplicate.getValue());
+
+                  if (rulesContext.getRulesData().isVerbose() || duplicates.size() == 1) {
+                    LoggingUtils.message(details, logger);
+                  } else {
+                    LoggingUtils.LOG.debug(details);
+                  }
+                }
+              }
+            }, logger);
+          }
+          final int stoppedReports = rulesContext.getRulesData().getInspectionLimits().getStoppedReports();
+          if (stoppedReports > 0) {
+            LoggingUtils.message("Parsing of " + stoppedReports + " " + StringUtil.pluralize("report", stoppedReports) + " stopped as inspection limits were exceeded", logger);
+          }
+          final long suppressedOutput = rulesContext.getRulesData().getSuppressedTestOutput();
+          if (suppressedOutput > 0) {
+            LoggingUtils.message("Passed tests output not reported: " + suppressedOutput + " chars", logger);
+          }
+          final StackTraceCache stackTraces = rulesContext.getRulesData().getStackTraceCache();
+          if (stackTraces.getSavedChars() > 0) {
+            LoggingUtils.message("Repeated stack traces: " + stackTraces.getDuplicates() + ", not reported: " + stackTraces.getSavedChars() + " chars", logger);
+          }
+          final long retriesAvoided = rulesContext.getRulesState().getRetriesAvoided();
+          if (retriesAvoided > 0) {
+            LoggingUtils.message("Reprocessing of failed reports postponed: " + retriesAvoided + " " + StringUtil.pluralize("time", (int)retriesAvoided), logger);
+          }
+          final ReportReadyPolicy readyPolicy = rulesContext.getRulesData().getMonitorRulesParameters().getReadyPolicy();
+          if (readyPolicy instanceof AdaptiveStagePolicy) {
+            final AdaptiveStagePolicy stagePolicy = (AdaptiveStagePolicy)readyPolicy;
+            LoggingUtils.message("Parsing stage decisions: runtime " + stagePolicy.getDecisions(AdaptiveStagePolicy.Decision.RUNTIME) +
+                                 ", speculative " + stagePolicy.getDecisions(AdaptiveStagePolicy.Decision.SPECULATIVE) +
+                                 ", deferred to finish " + stagePolicy.getDecisions(AdaptiveStagePolicy.Decision.DEFERRED), logger);
+          }
+          final PreParsedReports preParsedReports = rulesContext.getPreParsedReports();
+          if (preParsedReports != null && preParsedReports.getReplayed() > 0) {
+            LoggingUtils.message("Reports parsed in advance: " + preParsedReports.getReplayed(), logger);
+          }
           result.logAsTotalResult(rulesContext.getRulesData().getParseReportParameters());
         }
       }, logger);
@@ -530,54 +748,85 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
     private final long myStartTime;
 
-    public RulesData(@NotNull Rules rules,
-                     @NotNull Map<String, String> parameters,
-                     long startTime) {
-      myRules = rules;
-      myParameters = parameters;
-      myStartTime = startTime;
-    }
-
     @NotNull
-    public Rules getRules() {
-      return myRules;
-    }
+    private final InspectionLimits myInspectionLimits;
 
-    @SuppressWarnings("ConstantConditions")
     @NotNull
-    public String getType() {
-      return getReportType(myParameters);
-    }
+    private final AtomicLong mySuppressedTestOutput = new AtomicLong();
 
-    public boolean isVerbose() {
-      return isOutputVerbose(myParameters);
-    }
+    @NotNull
+    private final StackTraceCache myStackTraceCache = new StackTraceCache();
 
     @NotNull
-    public LogAction getWhenNoDataPublished() {
-      return LogAction.getAction(whenNoDataPublished(myParameters));
-    }
+    private final ReportReadyPolicy myReadyPolicy;
 
-    public boolean failBuildIfParsingFailed() {
-      return isFailBuildIfParsingFailed(myParameters);
-    }
+    // parameters are parsed once, monitoring and parsing of every report only read the fields
+    @NotNull
+    private final String myType;
+    private final boolean myVerbose;
+    private final boolean myParseOutOfDate;
+    private final boolean myReparseUpdated;
+    private final boolean myLogAsInternal;
+    private final int mySignatureDepth;
+    private final boolean myStackTraceReferences;
+    private final int myPassedTestOutputLimit;
+    @NotNull
+    private final String myTestProblemType;
+    @NotNull
+    private final String myInspectionProblemType;
+    @NotNull
+    private final String myDuplicationProblemType;
+    @NotNull
+    private final Map<String, String> myUnmodifiableParameters;
 
     @NotNull
-    public MonitorRulesCommand.MonitorRulesParameters getMonitorRulesParameters() {
-      return new MonitorRulesCommand.MonitorRulesParameters() {
+    private final MonitorRulesCommand.MonitorRulesParameters myMonitorRulesParameters;
+    @NotNull
+    private final ParseParameters myParseReportParameters;
+
+    @Nullable
+    private volatile String myCheckoutPath;
+    @Nullable
+    private DuplicationReporter myDuplicationReporter;
+
+    @SuppressWarnings("ConstantConditions")
+    public RulesData(@NotNull Rules rules,
+                     @NotNull Map<String, String> parameters,
+                     long startTime) {
+      myRules = rules;
+      myParameters = parameters;
+      myStartTime = startTime;
+      myInspectionLimits = isFailFastInspections(parameters)
+                           ? new InspectionLimits(getMaxErrors(parameters), getMaxWarnings(parameters))
+                           : InspectionLimits.UNLIMITED;
+      myReadyPolicy = ReportReadyPolicies.create(getReadyPolicy(parameters));
+
+      myType = getReportType(parameters);
+      myVerbose = isOutputVerbose(parameters);
+      myParseOutOfDate = isParseOutOfDateReports(parameters);
+      myReparseUpdated = isReparseUpdatedReports(parameters);
+      myLogAsInternal = isLogIsInternal(parameters);
+      mySignatureDepth = TeamCityProperties.getInteger(SIGNATURE_DEPTH_KB_PROPERTY, 0) * 1024;
+      myStackTraceReferences = isStackTraceReferences(parameters);
+      myPassedTestOutputLimit = getPassedTestOutputLimit(parameters);
+      myTestProblemType = getBuildProblemType(myType, "TestFailure");
+      myInspectionProblemType = getBuildProblemType(myType, "InspectFailure");
+      myDuplicationProblemType = getBuildProblemType(myType, "DupFailure");
+      myUnmodifiableParameters = Collections.unmodifiableMap(parameters);
+
+      myMonitorRulesParameters = new MonitorRulesCommand.MonitorRulesParameters() {
         @NotNull
         public Rules getRules() {
           return myRules;
         }
 
-        @SuppressWarnings("ConstantConditions")
         @NotNull
         public String getType() {
-          return getReportType(myParameters);
+          return myType;
         }
 
         public boolean isParseOutOfDate() {
-          return isParseOutOfDateReports(myParameters);
+          return myParseOutOfDate;
         }
 
         public long getStartTime() {
@@ -591,65 +840,187 @@ public class XmlReportPlugin extends AgentLifeCycleAdapter implements RulesProce
 
         @Override
         public boolean isReparseUpdated() {
-          return isReparseUpdatedReports(myParameters);
+          return myReparseUpdated;
+        }
+
+        public int getSignatureDepth() {
+          return mySignatureDepth;
+        }
+
+        @NotNull
+        public ReportReadyPolicy getReadyPolicy() {
+          return myReadyPolicy;
         }
       };
+      myParseReportParameters = new ReportParseParameters(null);
+    }
+
+    @NotNull
+    public Rules getRules() {
+      return myRules;
+    }
+
+    @NotNull
+    public String getType() {
+      return myType;
+    }
+
+    public boolean isVerbose() {
+      return myVerbose;
+    }
+
+    @NotNull
+    public LogAction getWhenNoDataPublished() {
+      return LogAction.getAction(whenNoDataPublished(myParameters));
+    }
+
+    public boolean failBuildIfParsingFailed() {
+      return isFailBuildIfParsingFailed(myParameters);
+    }
+
+    public boolean isSkipDuplicates() {
+      return XmlReportPluginUtil.isSkipDuplicates(myParameters);
+    }
+
+    @NotNull
+    public InspectionLimits getInspectionLimits() {
+      return myInspectionLimits;
+    }
+
+    /**
+     * @return number of characters of passed tests output which were not reported
+     */
+    public long getSuppressedTestOutput() {
+      return mySuppressedTestOutput.get();
+    }
+
+    @NotNull
+    public StackTraceCache getStackTraceCache() {
+      return myStackTraceCache;
+    }
+
+    @NotNull
+    public MonitorRulesCommand.MonitorRulesParameters getMonitorRulesParameters() {
+      return myMonitorRulesParameters;
     }
 
     @NotNull
     public ParseParameters getParseReportParameters() {
-      return new ParseParameters() {
-        public boolean isVerbose() {
-          return isOutputVerbose(myParameters);
-        }
+      return myParseReportParameters;
+    }
 
-        @NotNull
-        public BuildProgressLogger getThreadLogger() {
-          return getBuild().getBuildLogger().getThreadLogger();
-        }
+    /**
+     * @param flowLogger logger to use instead of the current thread logger
+     */
+    @NotNull
+    public ParseParameters getParseReportParameters(@Nullable final BuildProgressLogger flowLogger) {
+      return flowLogger == null ? myParseReportParameters : new ReportParseParameters(flowLogger);
+    }
 
-        @NotNull
-        private BuildProgressLogger getInternalizingThreadLogger() {
-          return isLogAsInternal() ?
-            ((MessageTweakingSupport) getThreadLogger()).getTweakedLogger(MessageInternalizer.MESSAGE_INTERNALIZER)
-            : getThreadLogger();
-        }
+    /**
+     * @return new flow for a report parsed concurrently with other reports
+     */
+    @NotNull
+    public FlowLogger createFlowLogger() {
+      return getBuild().getBuildLogger().getFlowLogger(FLOW_ID_PREFIX + myFlowCounter.incrementAndGet());
+    }
 
-        private boolean isLogAsInternal() {
-          return isLogIsInternal(myParameters);
-        }
+    @NotNull
+    private String getCheckoutPath() {
+      String checkoutPath = myCheckoutPath;
+      if (checkoutPath == null) {
+        checkoutPath = getBuild().getCheckoutDirectory().getAbsolutePath();
+        myCheckoutPath = checkoutPath;
+      }
+      return checkoutPath;
+    }
 
-        @NotNull
-        public InspectionReporter getInspectionReporter() {
-          return new TeamCityInspectionReporter(myInspectionReporter, getBuild().getBuildLogger(), getCheckoutDir(), getBuildProblemType(getType(), "InspectFailure"));
-        }
+    /**
+     * Duplication reporter keeps no state of its own, so one instance serves all reports
+     */
+    @NotNull
+    private synchronized DuplicationReporter getDuplicationReporter() {
+      if (myDuplicationReporter == null) {
+        myDuplicationReporter = new TeamCityDuplicationReporter(myDuplicatesReporter, getBuild().getBuildLogger(), getCheckoutPath(), myDuplicationProblemType);
+      }
+      return myDuplicationReporter;
+    }
 
-        @NotNull
-        public DuplicationReporter getDuplicationReporter() {
-          return new TeamCityDuplicationReporter(myDuplicatesReporter, getBuild().getBuildLogger(), getCheckoutDir().getAbsolutePath(), getBuildProblemType(getType(), "DupFailure"));
-        }
+    private final class ReportParseParameters implements ParseParameters {
+      @Nullable
+      private final BuildProgressLogger myFlowLogger;
 
-        @NotNull
-        public TestReporter getTestReporter() {
-          return new TeamCityTestReporter(getInternalizingThreadLogger(), getBuildProblemType(getType(), "TestFailure"), getCheckoutDir().getAbsolutePath());
-        }
+      private ReportParseParameters(@Nullable BuildProgressLogger flowLogger) {
+        myFlowLogger = flowLogger;
+      }
 
-        @NotNull
-        public Map<String, String> getParameters() {
-          return Collections.unmodifiableMap(myParameters);
-        }
+      public boolean isVerbose() {
+        return myVerbose;
+      }
 
-        @SuppressWarnings("ConstantConditions")
-        @NotNull
-        public String getType() {
-          return getReportType(myParameters);
-        }
+      @NotNull
+      public BuildProgressLogger getThreadLogger() {
+        return myFlowLogger != null ? myFlowLogger : getBuild().getBuildLogger().getThreadLogger();
+      }
 
-        @NotNull
-        public File getCheckoutDir() {
-          return getBuild().getCheckoutDirectory();
-        }
-      };
+      @NotNull
+      private BuildProgressLogger getInternalizingThreadLogger() {
+        return myLogAsInternal ?
+          ((MessageTweakingSupport) getThreadLogger()).getTweakedLogger(MessageInternalizer.MESSAGE_INTERNALIZER)
+          : getThreadLogger();
+      }
+
+      @NotNull
+      public InspectionReporter getInspectionReporter() {
+        return new TeamCityInspectionReporter(myInspectionReporter, getBuild().getBuildLogger(), getCheckoutDir(), myInspectionProblemType);
+      }
+
+      @NotNull
+      public InspectionLimits getInspectionLimits() {
+        return myInspectionLimits;
+      }
+
+      @NotNull
+      public DuplicationReporter getDuplicationReporter() {
+        return RulesData.this.getDuplicationReporter();
+      }
+
+      @NotNull
+      public TestReporter getTestReporter() {
+        TestReporter reporter = new TeamCityTestReporter(getInternalizingThreadLogger(), myTestProblemType, getCheckoutPath());
+        reporter = new StackTraceDeduplicator(reporter, myStackTraceCache, myStackTraceReferences);
+        return myPassedTestOutputLimit == -1 ? reporter : new PassedTestOutputLimiter(reporter, myPassedTestOutputLimit, mySuppressedTestOutput);
+      }
+
+      @Nullable
+      public ReportCache getReportCache() {
+        return myReportCache;
+      }
+
+      @Nullable
+      public ParseStatistics getParseStatistics() {
+        return myParseStatistics;
+      }
+
+      @NotNull
+      public ParseBudget getParseBudget() {
+        return myParseBudget;
+      }
+
+      @NotNull
+      public Map<String, String> getParameters() {
+        return myUnmodifiableParameters;
+      }
+
+      @NotNull
+      public String getType() {
+        return myType;
+      }
+
+      @NotNull
+      public File getCheckoutDir() {
+        return getBuild().getCheckoutDirectory();
+      }
     }
   }
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Parse statistics of reports of one build configuration: size, parse duration and number of tests per report.
+ * Statistics of the previous build predict parse costs in the current one, statistics of the current build
+ * are saved for the next one.
+ */
+public class ParseStatistics {
+  private static final String CHARSET = "UTF-8";
+  public static final int MAX_ENTRIES = 100000;
+
+  @NotNull
+  private final String myBasePrefix;
+  @NotNull
+  private final Map<String, Entry> myHistory;
+  @NotNull
+  private final Map<String, Entry> myCurrent = new ConcurrentHashMap<String, Entry>();
+
+  /**
+   * Average parse duration of a byte in the previous build in microseconds, 0 if unknown
+   */
+  private final double myMicrosPerByte;
+
+  /**
+   * @param baseDir reports are stored by their paths relative to this directory
+   */
+  public ParseStatistics(@NotNull File baseDir) {
+    this(baseDir, new HashMap<String, Entry>());
+  }
+
+  private ParseStatistics(@NotNull File baseDir, @NotNull Map<String, Entry> history) {
+    myBasePrefix = baseDir.getAbsolutePath() + File.separator;
+    myHistory = history;
+
+    long bytes = 0;
+    long micros = 0;
+    for (Entry entry : history.values()) {
+      bytes += entry.myBytes;
+      micros += entry.myMicros;
+    }
+    myMicrosPerByte = bytes > 0 ? (double)micros / bytes : 0;
+  }
+
+  /**
+   * @return statistics with the history read from the file, empty history if the file can't be read
+   */
+  @NotNull
+  public static ParseStatistics load(@NotNull File file, @NotNull File baseDir) {
+    final Map<String, Entry> history = new HashMap<String, Entry>();
+    if (file.isFile()) {
+      BufferedReader reader = null;
+      try {
+        reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+        String line;
+        while ((line = reader.readLine()) != null) {
+          final String[] fields = line.split("\t", 4);
+          if (fields.length < 4) continue;
+          try {
+            history.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Integer.parseInt(fields[2])));
+          } catch (NumberFormatException e) {
+            LoggingUtils.LOG.debug("Skipped malformed parse statistics line: " + line);
+          }
+        }
+      } catch (IOException e) {
+        LoggingUtils.LOG.debug("Failed to read parse statistics from " + file, e);
+      } finally {
+        FileUtil.close(reader);
+      }
+    }
+    return new ParseStatistics(baseDir, history);
+  }
+
+  /**
+   * Records the report parsed from scratch
+   */
+  public void record(@NotNull File report, long bytes, long micros, int tests) {
+    if (myCurrent.size() >= MAX_ENTRIES) return;
+    myCurrent.put(getKey(report), new Entry(bytes, micros, tests));
+  }
+
+  /**
+   * Predicts parse cost of the report. Costs are comparable only with other costs predicted by the same statistics.
+   *
+   * @return predicted duration in microseconds or the size if nothing is known about parse durations
+   */
+  public long predictCost(@NotNull File report, long bytes) {
+    if (myMicrosPerByte == 0) return bytes;
+
+    final Entry entry = myHistory.get(getKey(report));
+    if (entry != null && entry.myBytes > 0) {
+      // the same report usually grows or shrinks along with its parse duration
+      return (long)((double)entry.myMicros * bytes / entry.myBytes);
+    }
+    return (long)(myMicrosPerByte * bytes);
+  }
+
+  /**
+   * @return number of reports known from the previous build
+   */
+  public int getHistorySize() {
+    return myHistory.size();
+  }
+
+  /**
+   * Saves statistics of the current build, the previous statistics are kept if nothing was parsed
+   */
+  public void save(@NotNull File file) {
+    if (myCurrent.isEmpty()) return;
+
+    final File temp = new File(file.getPath() + ".tmp");
+    Writer writer = null;
+    try {
+      //noinspection ResultOfMethodCallIgnored
+      file.getParentFile().mkdirs();
+      writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), CHARSET));
+      for (Map.Entry<String, Entry> e : myCurrent.entrySet()) {
+        final Entry entry = e.getValue();
+        writer.write(entry.myBytes + "\t" + entry.myMicros + "\t" + entry.myTests + "\t" + e.getKey() + "\n");
+      }
+      writer.close();
+      writer = null;
+
+      FileUtil.delete(file);
+      if (!temp.renameTo(file)) FileUtil.delete(temp);
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to save parse statistics to " + file, e);
+      FileUtil.delete(temp);
+    } finally {
+      FileUtil.close(writer);
+    }
+  }
+
+  @NotNull
+  private String getKey(@NotNull File report) {
+    final String path = report.getAbsolutePath();
+    return (path.startsWith(myBasePrefix) ? path.substring(myBasePrefix.length()) : path).replace('\\', '/');
+  }
+
+  private static final class Entry {
+    private final long myBytes;
+    private final long myMicros;
+    // not used for predictions, saved along with the rest of the statistics
+    private final int myTests;
+
+    private Entry(long bytes, long micros, int tests) {
+      myBytes = bytes;
+      myMicros = micros;
+      myTests = tests;
+    }
+  }
+}
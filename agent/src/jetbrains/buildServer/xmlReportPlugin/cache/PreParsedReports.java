@@ -0,0 +1,282 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.xmlReportPlugin.*;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.xmlReportPlugin.XmlReportPluginUtil.*;
+
+/**
+ * Reports of the before finish stage parsed in advance while the build is running.
+ * A report is parsed in background once it has not changed for the stable period, its events are recorded
+ * in memory and replayed when the report is processed at build finish. Reports changed after being parsed
+ * in advance are parsed again, so the reported data is the same as without parsing in advance.
+ */
+public class PreParsedReports {
+  @NotNull
+  private final ParserFactory myParserFactory;
+  @NotNull
+  private final ParseParameters myParameters;
+  @Nullable
+  private final ParseStatistics myStatistics;
+  @NotNull
+  private final ParseScheduler myScheduler;
+  @NotNull
+  private final Object myOwner;
+  private final long myStablePeriod;
+  private final long myMaxSize;
+
+  @NotNull
+  private final Map<File, Entry> myEntries = new ConcurrentHashMap<File, Entry>();
+  @NotNull
+  private final AtomicLong mySize = new AtomicLong();
+  @NotNull
+  private final AtomicInteger myReplayed = new AtomicInteger();
+  private long myLastScanTime;
+
+  /**
+   * @param parameters   parameters reports are parsed with, reporters are not called while parsing in advance
+   * @param owner        owner of parse tasks in the scheduler
+   * @param stablePeriod time in milliseconds a report must stay unchanged to be parsed in advance
+   * @param maxSize      maximum total size of recorded events in bytes
+   */
+  public PreParsedReports(@NotNull final ParserFactory parserFactory,
+                          @NotNull final ParseParameters parameters,
+                          @NotNull final ParseScheduler scheduler,
+                          @NotNull final Object owner,
+                          long stablePeriod,
+                          long maxSize) {
+    myParserFactory = parserFactory;
+    myParameters = createSilentParameters(parameters);
+    myStatistics = parameters.getParseStatistics();
+    myScheduler = scheduler;
+    myOwner = owner;
+    myStablePeriod = stablePeriod;
+    myMaxSize = maxSize;
+  }
+
+  /**
+   * @return true if events of the reports with the given parameters can be recorded and replayed
+   */
+  public static boolean isSupported(@NotNull ParseParameters parameters) {
+    // inspection limits are shared by all reports, so fail-fast output depends on other reports
+    return isInspectionType(parameters.getType()) && !isFailFastInspections(parameters.getParameters());
+  }
+
+  /**
+   * Starts parsing of reports which have not changed for the stable period.
+   * Called periodically from the monitoring thread, rules are scanned at most twice per stable period
+   */
+  public void update(@NotNull Rules rules) {
+    final long now = System.currentTimeMillis();
+    if (now - myLastScanTime < myStablePeriod / 2) return;
+    myLastScanTime = now;
+
+    for (File file : rules.collectFiles()) {
+      final long lastModified = file.lastModified();
+      final long length = file.length();
+
+      final Entry entry = myEntries.get(file);
+      if (entry == null || !entry.isSame(lastModified, length)) {
+        if (entry != null) discard(entry);
+        myEntries.put(file, new Entry(lastModified, length, now));
+      } else if (entry.myTask == null && now - entry.mySeenTime >= myStablePeriod) {
+        start(file, entry);
+      }
+    }
+  }
+
+  private void start(@NotNull final File file, @NotNull final Entry entry) {
+    // same cost as of the parse at finish, so both are ordered alike by the scheduler
+    final long cost = myStatistics == null ? entry.myLength : myStatistics.predictCost(file, entry.myLength);
+    entry.myTask = myScheduler.submit(myOwner, entry.myLength, cost, new Runnable() {
+      public void run() {
+        preParse(file, entry);
+      }
+    });
+  }
+
+  private void preParse(@NotNull File file, @NotNull Entry entry) {
+    final long available = myMaxSize - mySize.get();
+    if (available <= 0) return;
+
+    final ReportEvents.Recorder recorder = new ReportEvents.Recorder(available);
+    final Parser parser = myParserFactory.createParser(recorder.wrap(myParameters));
+    try {
+      if (!parser.parse(file, null)) return;
+    } catch (Throwable t) {
+      LoggingUtils.LOG.debug("Failed to parse " + file + " in advance", t);
+      return;
+    }
+    final ParsingResult result = parser.getParsingResult();
+    if (result == null || !entry.isSame(file.lastModified(), file.length())) return;
+
+    final byte[] events = recorder.finish(result);
+    if (events == null) return;
+    synchronized (entry) {
+      if (entry.myDiscarded) return;
+      if (mySize.addAndGet(events.length) > myMaxSize) {
+        mySize.addAndGet(-events.length);
+        return;
+      }
+      entry.myEvents = events;
+    }
+  }
+
+  private void discard(@NotNull Entry entry) {
+    final Future<?> task = entry.myTask;
+    if (task != null) task.cancel(false);
+    synchronized (entry) {
+      entry.myDiscarded = true;
+      if (entry.myEvents != null) mySize.addAndGet(-entry.myEvents.length);
+      entry.myEvents = null;
+    }
+  }
+
+  /**
+   * Replays events of the report parsed in advance to the reporters of the given parameters.
+   * Parsing in advance which is not completed yet is cancelled rather than waited for:
+   * the caller is a parse task itself and may occupy the only thread parsing in advance is waiting for
+   *
+   * @return parsing result of the report or null if the report must be parsed
+   */
+  @Nullable
+  public ParsingResult replay(@NotNull File file, @NotNull ParseParameters parameters) {
+    final Entry entry = myEntries.remove(file);
+    if (entry == null) return null;
+    final Future<?> task = entry.myTask;
+    if (task == null || !task.isDone()) {
+      discard(entry);
+      return null;
+    }
+
+    final byte[] events;
+    synchronized (entry) {
+      events = entry.myEvents;
+    }
+    discard(entry);
+    if (events == null) return null;
+    if (!entry.isSame(file.lastModified(), file.length())) return null;
+
+    final ParsingResult result = ReportEvents.replay(events, parameters);
+    if (result != null) myReplayed.incrementAndGet();
+    return result;
+  }
+
+  /**
+   * @return number of reports replayed instead of being parsed at finish
+   */
+  public int getReplayed() {
+    return myReplayed.get();
+  }
+
+  /**
+   * Drops all recorded events and cancels scheduled parsing
+   */
+  public void clear() {
+    for (Entry entry : myEntries.values()) {
+      discard(entry);
+    }
+    myEntries.clear();
+  }
+
+  @NotNull
+  private static ParseParameters createSilentParameters(@NotNull ParseParameters parameters) {
+    return new DelegatingParseParameters(parameters) {
+      @NotNull
+      @Override
+      public InspectionReporter getInspectionReporter() {
+        return SILENT_INSPECTION_REPORTER;
+      }
+
+      @Nullable
+      @Override
+      public ReportCache getReportCache() {
+        return null;
+      }
+
+      @Nullable
+      @Override
+      public ParseStatistics getParseStatistics() {
+        return null;
+      }
+
+      @NotNull
+      @Override
+      public ParseBudget getParseBudget() {
+        return ParseBudget.UNLIMITED;
+      }
+    };
+  }
+
+  @NotNull
+  private static final InspectionReporter SILENT_INSPECTION_REPORTER = new InspectionReporter() {
+    public void reportInspection(@NotNull InspectionResult inspection) {
+    }
+
+    public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+    }
+
+    public void markBuildAsInspectionsBuild() {
+    }
+
+    public void info(@NotNull String message) {
+    }
+
+    public void warning(@NotNull String message) {
+    }
+
+    public void error(@NotNull String message) {
+    }
+
+    public void failure(@NotNull String message) {
+    }
+  };
+
+  private static final class Entry {
+    private final long myLastModified;
+    private final long myLength;
+    private final long mySeenTime;
+    @Nullable
+    private volatile Future<?> myTask;
+    @Nullable
+    private byte[] myEvents;
+    private boolean myDiscarded;
+
+    private Entry(long lastModified, long length, long seenTime) {
+      myLastModified = lastModified;
+      myLength = length;
+      mySeenTime = seenTime;
+    }
+
+    private boolean isSame(long lastModified, long length) {
+      return myLastModified == lastModified && myLength == length;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.ParseParameters;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.XmlReportPluginConstants;
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import jetbrains.buildServer.xmlReportPlugin.utils.ReportFingerprint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.xmlReportPlugin.XmlReportPluginUtil.*;
+
+/**
+ * On-agent cache of report events shared by all builds. Events are stored by report content, type and
+ * processing parameters, so a report restored unchanged by the build is replayed instead of being parsed.
+ * Total size of the cache is bounded, least recently used entries are removed first.
+ */
+public class ReportCache {
+  private static final String SUFFIX = ".events";
+
+  /**
+   * Settings which change events produced by parsers. Other parameters, e.g. build number or build id, are not a part
+   * of the key, otherwise a report would never be replayed in another build
+   */
+  private static final String[] OUTPUT_PARAMETERS = {
+    XmlReportPluginConstants.VERBOSE_OUTPUT,
+    XmlReportPluginConstants.MAX_ERRORS,
+    XmlReportPluginConstants.MAX_WARNINGS,
+    XmlReportPluginConstants.PASSED_TEST_OUTPUT_LIMIT,
+    XmlReportPluginConstants.STACK_TRACE_REFERENCES,
+    XmlReportPluginConstants.LOG_INTERNAL_SYSTEM_ERROR,
+    XmlReportPluginConstants.FINDBUGS_HOME,
+    XmlReportPluginConstants.FINDBUGS_LOOKUP_FILES
+  };
+
+  @NotNull
+  private final File myDir;
+  private final long myMaxSize;
+  private long mySize = -1;
+
+  @NotNull private final AtomicInteger myHits = new AtomicInteger();
+  @NotNull private final AtomicInteger myMisses = new AtomicInteger();
+
+  public ReportCache(@NotNull final File dir, long maxSize) {
+    myDir = dir;
+    myMaxSize = maxSize;
+  }
+
+  /**
+   * @return the cache key for the report or null if the report can't be cached
+   */
+  @Nullable
+  public static String getKey(@NotNull File report, @NotNull ParseParameters parameters) {
+    final String type = parameters.getType();
+    if (!isTestType(type) && !isInspectionType(type)) return null;
+    // inspection limits are shared by all reports, so fail-fast output depends on other reports
+    if (isFailFastInspections(parameters.getParameters())) return null;
+
+    final String fingerprint = ReportFingerprint.compute(report);
+    if (fingerprint == null) return null;
+
+    final StringBuilder key = new StringBuilder(fingerprint).append('\n').append(type);
+    final Map<String, String> params = parameters.getParameters();
+    for (String name : OUTPUT_PARAMETERS) {
+      key.append('\n').append(name).append('=').append(params.get(name));
+    }
+    // FindBugs reports sources relative to the checkout directory
+    if ("findBugs".equals(type)) key.append('\n').append(parameters.getCheckoutDir().getAbsolutePath());
+    return ReportFingerprint.hash(key.toString());
+  }
+
+  @NotNull
+  public ReportEvents.Recorder createRecorder() {
+    return new ReportEvents.Recorder(myMaxSize);
+  }
+
+  /**
+   * Replays cached events of the report to the reporters of the given parameters
+   *
+   * @return parsing result of the report or null if the report is not cached
+   */
+  @Nullable
+  public ParsingResult replay(@NotNull String key, @NotNull ParseParameters parameters) {
+    final byte[] events = get(key);
+    final ParsingResult result = events == null ? null : ReportEvents.replay(events, parameters);
+    if (result == null) {
+      myMisses.incrementAndGet();
+    } else {
+      myHits.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Stores events recorded while parsing the report
+   */
+  public void store(@NotNull String key, @NotNull ReportEvents.Recorder recorder, @NotNull ParsingResult result) {
+    final byte[] events = recorder.finish(result);
+    if (events != null) put(key, events);
+  }
+
+  public int getHits() {
+    return myHits.get();
+  }
+
+  public int getMisses() {
+    return myMisses.get();
+  }
+
+  @Nullable
+  private synchronized byte[] get(@NotNull String key) {
+    final File file = getFile(key);
+    if (!file.isFile()) return null;
+
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(file));
+      final byte[] events = new byte[(int)file.length()];
+      in.readFully(events);
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      return events;
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to read cached report events from " + file, e);
+      return null;
+    } finally {
+      FileUtil.close(in);
+    }
+  }
+
+  private synchronized void put(@NotNull String key, @NotNull byte[] events) {
+    if (events.length > myMaxSize) return;
+
+    final long size = getSize();
+    final File file = getFile(key);
+    final File temp = new File(myDir, key + ".tmp");
+    OutputStream out = null;
+    try {
+      //noinspection ResultOfMethodCallIgnored
+      myDir.mkdirs();
+      out = new FileOutputStream(temp);
+      out.write(events);
+      out.close();
+      out = null;
+
+      final long oldSize = file.isFile() ? file.length() : 0;
+      FileUtil.delete(file);
+      if (!temp.renameTo(file)) {
+        FileUtil.delete(temp);
+        return;
+      }
+      mySize = size - oldSize + events.length;
+      evict();
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to cache report events to " + file, e);
+      FileUtil.delete(temp);
+    } finally {
+      FileUtil.close(out);
+    }
+  }
+
+  private long getSize() {
+    if (mySize < 0) {
+      long size = 0;
+      for (File file : listEntries()) {
+        size += file.length();
+      }
+      mySize = size;
+    }
+    return mySize;
+  }
+
+  private void evict() {
+    if (mySize <= myMaxSize) return;
+
+    final List<File> entries = listEntries();
+    Collections.sort(entries, new Comparator<File>() {
+      public int compare(final File o1, final File o2) {
+        final long m1 = o1.lastModified();
+        final long m2 = o2.lastModified();
+        return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+      }
+    });
+    for (File file : entries) {
+      if (mySize <= myMaxSize) return;
+      final long length = file.length();
+      if (FileUtil.delete(file)) mySize -= length;
+    }
+  }
+
+  @NotNull
+  private List<File> listEntries() {
+    final File[] files = myDir.listFiles(new FileFilter() {
+      public boolean accept(final File file) {
+        return file.isFile() && file.getName().endsWith(SUFFIX);
+      }
+    });
+    return files == null ? new ArrayList<File>() : new ArrayList<File>(Arrays.asList(files));
+  }
+
+  @NotNull
+  private File getFile(@NotNull String key) {
+    return new File(myDir, key + SUFFIX);
+  }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.*;
+import jetbrains.buildServer.xmlReportPlugin.DelegatingParseParameters;
+import jetbrains.buildServer.xmlReportPlugin.MessageLogger;
+import jetbrains.buildServer.xmlReportPlugin.ParseParameters;
+import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compact stream of test and inspection events produced by a parser, it can be replayed without parsing the report.
+ * Stream ends with the parsing result.
+ */
+public class ReportEvents {
+  private static final int VERSION = 2;
+
+  private static final byte TEST_SUITE_OPEN = 1;
+  private static final byte TEST_OPEN = 2;
+  private static final byte TEST_STD_OUT = 3;
+  private static final byte TEST_ERR_OUT = 4;
+  private static final byte TEST_FAIL = 5;
+  private static final byte TEST_IGNORED = 6;
+  private static final byte TEST_CLOSE = 7;
+  private static final byte TEST_SUITE_CLOSE = 8;
+  private static final byte INSPECTION = 9;
+  private static final byte INSPECTION_TYPE = 10;
+  private static final byte TEST_INFO = 11;
+  private static final byte TEST_WARNING = 12;
+  private static final byte TEST_ERROR = 13;
+  private static final byte TEST_FAILURE = 14;
+  private static final byte INSPECTION_INFO = 15;
+  private static final byte INSPECTION_WARNING = 16;
+  private static final byte INSPECTION_ERROR = 17;
+  private static final byte INSPECTION_FAILURE = 18;
+  private static final byte INSPECTIONS_BUILD = 19;
+  private static final byte TEST_RESULT = 100;
+  private static final byte INSPECTION_RESULT = 101;
+
+  /**
+   * Records events passed to reporters of the wrapped parameters
+   */
+  public static class Recorder {
+    private final long myMaxSize;
+    @Nullable private ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+    @Nullable private DataOutputStream myOut = new DataOutputStream(myBytes);
+
+    /**
+     * @param maxSize recording stops if the stream becomes larger
+     */
+    public Recorder(long maxSize) {
+      myMaxSize = maxSize;
+      write(new Writer() {
+        public void write(@NotNull DataOutputStream out) throws IOException {
+          out.writeInt(VERSION);
+        }
+      });
+    }
+
+    /**
+     * @return the recorded events or null if the stream is too large or the result can't be recorded
+     */
+    @Nullable
+    public byte[] finish(@NotNull final ParsingResult result) {
+      if (result.getProblem() != null) return null;
+      if (result instanceof TestParsingResult) {
+        write(new Writer() {
+          public void write(@NotNull DataOutputStream out) throws IOException {
+            out.writeByte(TEST_RESULT);
+            out.writeInt(((TestParsingResult)result).getSuites());
+            out.writeInt(((TestParsingResult)result).getTests());
+          }
+        });
+      } else if (result instanceof InspectionParsingResult) {
+        write(new Writer() {
+          public void write(@NotNull DataOutputStream out) throws IOException {
+            out.writeByte(INSPECTION_RESULT);
+            out.writeInt(((InspectionParsingResult)result).getErrors());
+            out.writeInt(((InspectionParsingResult)result).getWarnings());
+            out.writeInt(((InspectionParsingResult)result).getInfos());
+          }
+        });
+      } else {
+        return null;
+      }
+      return myBytes == null ? null : myBytes.toByteArray();
+    }
+
+    @NotNull
+    public ParseParameters wrap(@NotNull final ParseParameters parameters) {
+      return new DelegatingParseParameters(parameters) {
+        @NotNull
+        @Override
+        public TestReporter getTestReporter() {
+          return record(super.getTestReporter());
+        }
+
+        @NotNull
+        @Override
+        public InspectionReporter getInspectionReporter() {
+          return record(super.getInspectionReporter());
+        }
+      };
+    }
+
+    @NotNull
+    private TestReporter record(@NotNull final TestReporter delegate) {
+      return new TestReporter() {
+        public void openTestSuite(@NotNull String name) {
+          event(TEST_SUITE_OPEN, name);
+          delegate.openTestSuite(name);
+        }
+
+        public void openTest(@NotNull String name) {
+          event(TEST_OPEN, name);
+          delegate.openTest(name);
+        }
+
+        public void testStdOutput(@NotNull String text) {
+          event(TEST_STD_OUT, text);
+          delegate.testStdOutput(text);
+        }
+
+        public void testErrOutput(@NotNull String text) {
+          event(TEST_ERR_OUT, text);
+          delegate.testErrOutput(text);
+        }
+
+        public void testFail(@Nullable String error, @Nullable String stacktrace) {
+          event(TEST_FAIL, error, stacktrace);
+          delegate.testFail(error, stacktrace);
+        }
+
+        public void testIgnored(@NotNull String message) {
+          event(TEST_IGNORED, message);
+          delegate.testIgnored(message);
+        }
+
+        public void closeTest(final long duration) {
+          write(new Writer() {
+            public void write(@NotNull DataOutputStream out) throws IOException {
+              out.writeByte(TEST_CLOSE);
+              out.writeLong(duration);
+            }
+          });
+          delegate.closeTest(duration);
+        }
+
+        public void closeTestSuite() {
+          event(TEST_SUITE_CLOSE);
+          delegate.closeTestSuite();
+        }
+
+        public void info(@NotNull String message) {
+          event(TEST_INFO, message);
+          delegate.info(message);
+        }
+
+        public void warning(@NotNull String message) {
+          event(TEST_WARNING, message);
+          delegate.warning(message);
+        }
+
+        public void error(@NotNull String message) {
+          event(TEST_ERROR, message);
+          delegate.error(message);
+        }
+
+        public void failure(@NotNull String message) {
+          event(TEST_FAILURE, message);
+          delegate.failure(message);
+        }
+      };
+    }
+
+    @NotNull
+    private InspectionReporter record(@NotNull final InspectionReporter delegate) {
+      return new InspectionReporter() {
+        public void reportInspection(@NotNull final InspectionResult inspection) {
+          write(new Writer() {
+            public void write(@NotNull DataOutputStream out) throws IOException {
+              out.writeByte(INSPECTION);
+              writeString(out, inspection.getFilePath());
+              writeString(out, inspection.getInspectionId());
+              writeString(out, inspection.getMessage());
+              out.writeInt(inspection.getLine());
+              out.writeInt(inspection.getPriority());
+            }
+          });
+          delegate.reportInspection(inspection);
+        }
+
+        public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+          event(INSPECTION_TYPE, inspectionType.getId(), inspectionType.getName(), inspectionType.getDescription(), inspectionType.getCategory());
+          delegate.reportInspectionType(inspectionType);
+        }
+
+        public void markBuildAsInspectionsBuild() {
+          event(INSPECTIONS_BUILD);
+          delegate.markBuildAsInspectionsBuild();
+        }
+
+        public void info(@NotNull String message) {
+          event(INSPECTION_INFO, message);
+          delegate.info(message);
+        }
+
+        public void warning(@NotNull String message) {
+          event(INSPECTION_WARNING, message);
+          delegate.warning(message);
+        }
+
+        public void error(@NotNull String message) {
+          event(INSPECTION_ERROR, message);
+          delegate.error(message);
+        }
+
+        public void failure(@NotNull String message) {
+          event(INSPECTION_FAILURE, message);
+          delegate.failure(message);
+        }
+      };
+    }
+
+    private void event(final byte type, @Nullable final String... strings) {
+      write(new Writer() {
+        public void write(@NotNull DataOutputStream out) throws IOException {
+          out.writeByte(type);
+          for (String s : strings) {
+            writeString(out, s);
+          }
+        }
+      });
+    }
+
+    private synchronized void write(@NotNull Writer writer) {
+      if (myOut == null || myBytes == null) return;
+      try {
+        writer.write(myOut);
+      } catch (IOException e) {
+        myBytes = null;
+        myOut = null;
+        return;
+      }
+      if (myBytes.size() > myMaxSize) {
+        myBytes = null;
+        myOut = null;
+      }
+    }
+  }
+
+  /**
+   * Replays recorded events to the reporters of the given parameters
+   *
+   * @return the recorded parsing result or null if the events are malformed, in this case nothing is replayed
+   */
+  @Nullable
+  public static ParsingResult replay(@NotNull byte[] events, @NotNull ParseParameters parameters) {
+    try {
+      if (read(events, null) == null) return null;
+      return read(events, parameters);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static ParsingResult read(@NotNull byte[] events, @Nullable ParseParameters parameters) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(events));
+    if (in.readInt() != VERSION) return null;
+
+    TestReporter testReporter = null;
+    InspectionReporter inspectionReporter = null;
+
+    while (true) {
+      final byte type = in.readByte();
+      if (type == TEST_RESULT) {
+        final TestParsingResult result = new TestParsingResult(in.readInt(), in.readInt());
+        return in.read() == -1 ? result : null;
+      }
+      if (type == INSPECTION_RESULT) {
+        final InspectionParsingResult result = new InspectionParsingResult(in.readInt(), in.readInt(), in.readInt());
+        return in.read() == -1 ? result : null;
+      }
+
+      if (type >= INSPECTION && type <= INSPECTION_TYPE || type >= INSPECTION_INFO && type <= INSPECTIONS_BUILD) {
+        if (inspectionReporter == null && parameters != null) inspectionReporter = parameters.getInspectionReporter();
+        if (!readInspectionEvent(type, in, inspectionReporter)) return null;
+      } else {
+        if (testReporter == null && parameters != null) testReporter = parameters.getTestReporter();
+        if (!readTestEvent(type, in, testReporter)) return null;
+      }
+    }
+  }
+
+  private static boolean readTestEvent(byte type, @NotNull DataInputStream in, @Nullable TestReporter reporter) throws IOException {
+    switch (type) {
+      case TEST_SUITE_OPEN: {
+        final String name = readNotNullString(in);
+        if (reporter != null) reporter.openTestSuite(name);
+        return true;
+      }
+      case TEST_OPEN: {
+        final String name = readNotNullString(in);
+        if (reporter != null) reporter.openTest(name);
+        return true;
+      }
+      case TEST_STD_OUT: {
+        final String text = readNotNullString(in);
+        if (reporter != null) reporter.testStdOutput(text);
+        return true;
+      }
+      case TEST_ERR_OUT: {
+        final String text = readNotNullString(in);
+        if (reporter != null) reporter.testErrOutput(text);
+        return true;
+      }
+      case TEST_FAIL: {
+        final String error = readString(in);
+        final String stacktrace = readString(in);
+        if (reporter != null) reporter.testFail(error, stacktrace);
+        return true;
+      }
+      case TEST_IGNORED: {
+        final String message = readNotNullString(in);
+        if (reporter != null) reporter.testIgnored(message);
+        return true;
+      }
+      case TEST_CLOSE: {
+        final long duration = in.readLong();
+        if (reporter != null) reporter.closeTest(duration);
+        return true;
+      }
+      case TEST_SUITE_CLOSE:
+        if (reporter != null) reporter.closeTestSuite();
+        return true;
+      default:
+        return readMessage(type - TEST_INFO, in, reporter);
+    }
+  }
+
+  private static boolean readInspectionEvent(byte type, @NotNull DataInputStream in, @Nullable InspectionReporter reporter) throws IOException {
+    switch (type) {
+      case INSPECTION: {
+        final InspectionResult inspection = new InspectionResult(readString(in), readString(in), readString(in), in.readInt(), in.readInt());
+        if (reporter != null) reporter.reportInspection(inspection);
+        return true;
+      }
+      case INSPECTION_TYPE: {
+        final InspectionTypeResult inspectionType = new InspectionTypeResult(readString(in), readString(in), readString(in), readString(in));
+        if (reporter != null) reporter.reportInspectionType(inspectionType);
+        return true;
+      }
+      case INSPECTIONS_BUILD:
+        if (reporter != null) reporter.markBuildAsInspectionsBuild();
+        return true;
+      default:
+        return readMessage(type - INSPECTION_INFO, in, reporter);
+    }
+  }
+
+  private static boolean readMessage(int kind, @NotNull DataInputStream in, @Nullable MessageLogger logger) throws IOException {
+    if (kind < 0 || kind > 3) return false;
+    final String message = readNotNullString(in);
+    if (logger == null) return true;
+    switch (kind) {
+      case 0:
+        logger.info(message);
+        break;
+      case 1:
+        logger.warning(message);
+        break;
+      case 2:
+        logger.error(message);
+        break;
+      default:
+        logger.failure(message);
+    }
+    return true;
+  }
+
+  private static void writeString(@NotNull DataOutputStream out, @Nullable String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static String readString(@NotNull DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length == -1) return null;
+    if (length < 0 || length > in.available()) throw new IOException("Malformed string length " + length);
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  @NotNull
+  private static String readNotNullString(@NotNull DataInputStream in) throws IOException {
+    final String s = readString(in);
+    if (s == null) throw new IOException("Unexpected null string");
+    return s;
+  }
+
+  private interface Writer {
+    void write(@NotNull DataOutputStream out) throws IOException;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jetbrains.buildServer.xmlReportPlugin.inspections;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.xmlReportPlugin.MessageLogger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Running inspection counters shared by all reports of one monitoring rules set.
+ * Used in fail-fast mode: once the error or warning limit is exceeded parsing of
+ * inspection reports stops.
+ * Counters are kept per report file, so a report parsed again replaces its previous counts.
+ */
+public class InspectionLimits {
+  @NotNull
+  public static final InspectionLimits UNLIMITED = new InspectionLimits(-1, -1);
+
+  private final int myMaxErrors;
+  private final int myMaxWarnings;
+
+  private int myErrors;
+  private int myWarnings;
+  private boolean myExceededLogged;
+
+  @NotNull
+  private final Map<File, Report> myReports = new HashMap<File, Report>();
+
+  public InspectionLimits(int maxErrors, int maxWarnings) {
+    myMaxErrors = maxErrors;
+    myMaxWarnings = maxWarnings;
+  }
+
+  /**
+   * Starts counting inspections of the report, counts of its previous parsing are discarded
+   *
+   * @throws InspectionLimitsExceededException if the limits are already exceeded by other reports
+   */
+  @NotNull
+  public Report startReport(@NotNull File file, @NotNull MessageLogger logger) {
+    final Report report = new Report(file, logger);
+    if (this == UNLIMITED) return report;
+
+    synchronized (this) {
+      final Report prev = myReports.put(file, report);
+      if (prev != null) {
+        myErrors -= prev.myErrors;
+        myWarnings -= prev.myWarnings;
+      }
+    }
+    report.checkExceeded();
+    return report;
+  }
+
+  public synchronized boolean isExceeded() {
+    return myMaxErrors != -1 && myErrors > myMaxErrors || myMaxWarnings != -1 && myWarnings > myMaxWarnings;
+  }
+
+  /**
+   * @return number of reports which were not parsed completely as the limits were exceeded
+   */
+  public synchronized int getStoppedReports() {
+    int count = 0;
+    for (Report report : myReports.values()) {
+      if (report.myStopped) ++count;
+    }
+    return count;
+  }
+
+  /**
+   * Inspection counters of one report
+   */
+  public final class Report {
+    @NotNull private final File myFile;
+    @NotNull private final MessageLogger myLogger;
+
+    private int myErrors;
+    private int myWarnings;
+    private boolean myStopped;
+
+    private Report(@NotNull File file, @NotNull MessageLogger logger) {
+      myFile = file;
+      myLogger = logger;
+    }
+
+    /**
+     * Counts an inspection of the given priority: 1 is an error, 2 is a warning, others are infos
+     *
+     * @throws InspectionLimitsExceededException if the limits are exceeded and parsing must stop
+     */
+    public void inspectionFound(int priority) {
+      switch (priority) {
+        case 1:
+          errorFound();
+          break;
+        case 2:
+          warningFound();
+          break;
+        default:
+          checkExceeded();
+      }
+    }
+
+    /**
+     * @throws InspectionLimitsExceededException if the limits are exceeded and parsing must stop
+     */
+    public void errorFound() {
+      if (InspectionLimits.this == UNLIMITED) return;
+      synchronized (InspectionLimits.this) {
+        ++myErrors;
+        ++InspectionLimits.this.myErrors;
+      }
+      checkExceeded();
+    }
+
+    /**
+     * @throws InspectionLimitsExceededException if the limits are exceeded and parsing must stop
+     */
+    public void warningFound() {
+      if (InspectionLimits.this == UNLIMITED) return;
+      synchronized (InspectionLimits.this) {
+        ++myWarnings;
+        ++InspectionLimits.this.myWarnings;
+      }
+      checkExceeded();
+    }
+
+    private void checkExceeded() {
+      if (InspectionLimits.this == UNLIMITED) return;
+      final boolean log;
+      synchronized (InspectionLimits.this) {
+        if (!isExceeded()) return;
+        myStopped = true;
+        log = !myExceededLogged;
+        myExceededLogged = true;
+      }
+      if (log) {
+        myLogger.warning("Inspection limits exceeded, remaining inspections will not be parsed");
+      }
+      throw new InspectionLimitsExceededException(myFile);
+    }
+  }
+}
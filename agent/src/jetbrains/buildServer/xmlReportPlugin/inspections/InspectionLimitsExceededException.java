@@ -0,0 +1,32 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jetbrains.buildServer.xmlReportPlugin.inspections;
+
+import java.io.File;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thrown from {@link InspectionLimits.Report} to stop parsing of an inspection report when the limits are exceeded
+ */
+public class InspectionLimitsExceededException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public InspectionLimitsExceededException(@NotNull File file) {
+    super("Inspection limits exceeded while parsing " + file.getAbsolutePath());
+  }
+}
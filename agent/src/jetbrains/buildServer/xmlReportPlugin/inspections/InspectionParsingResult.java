@@ -32,11 +32,20 @@ public class InspectionParsingResult extends ProblemParsingResult {
   private int myErrors;
   private int myWarnings;
   private int myInfos;
+  private boolean myTruncated;
 
   public InspectionParsingResult(int errors, int warnings, int infos) {
+    this(errors, warnings, infos, false);
+  }
+
+  /**
+   * @param truncated true if parsing stopped as inspection limits were exceeded, so the counts are partial
+   */
+  public InspectionParsingResult(int errors, int warnings, int infos, boolean truncated) {
     myErrors = errors;
     myWarnings = warnings;
     myInfos = infos;
+    myTruncated = truncated;
   }
 
   public int getErrors() {
@@ -51,11 +60,16 @@ public class InspectionParsingResult extends ProblemParsingResult {
     return myInfos;
   }
 
+  public boolean isTruncated() {
+    return myTruncated;
+  }
+
   public void accumulate(@NotNull ParsingResult parsingResult) {
     final InspectionParsingResult inspectionParsingResult = (InspectionParsingResult) parsingResult;
     myErrors += inspectionParsingResult.getErrors();
     myWarnings += inspectionParsingResult.getWarnings();
     myInfos += inspectionParsingResult.getInfos();
+    myTruncated |= inspectionParsingResult.isTruncated();
   }
 
   @NotNull
@@ -72,6 +86,9 @@ public class InspectionParsingResult extends ProblemParsingResult {
     message.append(myWarnings).append(" warning").append(getEnding(myWarnings));
     message.append(", ");
     message.append(myInfos).append(" info message").append(getEnding(myInfos));
+    if (myTruncated) {
+      message.append(" (parsing stopped as inspection limits were exceeded)");
+    }
 
     if (parameters.isVerbose()) {
       parameters.getThreadLogger().message(message.toString());
@@ -86,14 +103,14 @@ public class InspectionParsingResult extends ProblemParsingResult {
     final int errorLimit = XmlReportPluginUtil.getMaxErrors(parameters.getParameters());
     if ((errorLimit != -1) && (myErrors > errorLimit)) {
       final String prefix = "Inspection errors limit " + errorLimit + " reached";
-      logger.error(prefix + ": found " + myErrors + " error" + getEnding(myErrors));
+      logger.error(prefix + ": found " + getAtLeast() + myErrors + " error" + getEnding(myErrors));
       logger.logBuildProblem(createBuildProblem("err" + myErrors, prefix));
     }
 
     final int warningLimit = XmlReportPluginUtil.getMaxWarnings(parameters.getParameters());
     if ((warningLimit != -1) && (myWarnings > warningLimit)) {
       final String prefix = "Inspection warnings limit " + warningLimit + " reached";
-      logger.error(prefix + ": found " + myWarnings + " warning" + getEnding(myWarnings));
+      logger.error(prefix + ": found " + getAtLeast() + myWarnings + " warning" + getEnding(myWarnings));
       logger.logBuildProblem(createBuildProblem("warn" + myWarnings, prefix));
     }
   }
@@ -103,6 +120,11 @@ public class InspectionParsingResult extends ProblemParsingResult {
     return BuildProblemData.createBuildProblem(id, XmlReportPluginConstants.BUILD_PROBLEM_TYPE, descr);
   }
 
+  @NotNull
+  private String getAtLeast() {
+    return myTruncated ? "at least " : "";
+  }
+
   @NotNull
   private static String getEnding(int number) {
     return (number == 1 ? "" : "s");
@@ -38,4 +38,9 @@ public interface InspectionReporter extends MessageLogger {
    * @param inspectionType Inspection type description
    */
   void reportInspectionType(@NotNull InspectionTypeResult inspectionType);
+
+  /**
+   * Mark the build as the one which reports inspections even if no inspections are found
+   */
+  void markBuildAsInspectionsBuild();
 }
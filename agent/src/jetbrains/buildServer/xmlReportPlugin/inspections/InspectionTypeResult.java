@@ -57,6 +57,29 @@ public class InspectionTypeResult {
     return myCategory;
   }
 
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    final InspectionTypeResult that = (InspectionTypeResult)o;
+
+    if (myId != null ? !myId.equals(that.myId) : that.myId != null) return false;
+    if (myName != null ? !myName.equals(that.myName) : that.myName != null) return false;
+    if (myDescription != null ? !myDescription.equals(that.myDescription) : that.myDescription != null) return false;
+    return !(myCategory != null ? !myCategory.equals(that.myCategory) : that.myCategory != null);
+
+  }
+
+  @Override
+  public int hashCode() {
+    int result = myId != null ? myId.hashCode() : 0;
+    result = 31 * result + (myName != null ? myName.hashCode() : 0);
+    result = 31 * result + (myDescription != null ? myDescription.hashCode() : 0);
+    result = 31 * result + (myCategory != null ? myCategory.hashCode() : 0);
+    return result;
+  }
+
   @Override
   public String toString() {
     return "InspectionTypeInfo{" +
@@ -17,7 +17,7 @@
 package jetbrains.buildServer.xmlReportPlugin.inspections;
 
 import java.io.File;
-import java.util.Collections;
+import java.util.*;
 import jetbrains.buildServer.agent.BuildProgressLogger;
 import jetbrains.buildServer.agent.inspections.InspectionAttributesId;
 import jetbrains.buildServer.agent.inspections.InspectionInstance;
@@ -33,9 +33,23 @@ import org.jetbrains.annotations.Nullable;
  * Time: 13:26
  */
 public class TeamCityInspectionReporter extends BaseMessageLogger implements InspectionReporter {
+  private static final String SEVERITY = InspectionAttributesId.SEVERITY.toString();
+  private static final Collection<String> ERROR = Collections.singleton(InspectionSeverityValues.ERROR.toString());
+  private static final Collection<String> WARNING = Collections.singleton(InspectionSeverityValues.WARNING.toString());
+  private static final Collection<String> INFO = Collections.singleton(InspectionSeverityValues.INFO.toString());
+
   @NotNull
   private final jetbrains.buildServer.agent.inspections.InspectionReporter myInspectionReporter;
 
+  // reports list inspections grouped by file, so remembering the last resolved path is enough
+  @Nullable
+  private String myLastFilePath;
+  @Nullable
+  private String myLastRelativePath;
+
+  @NotNull
+  private final Set<InspectionTypeResult> myReportedTypes = new HashSet<InspectionTypeResult>();
+
   public TeamCityInspectionReporter(@NotNull jetbrains.buildServer.agent.inspections.InspectionReporter inspectionReporter,
                                     @NotNull BuildProgressLogger logger,
                                     @NotNull File baseFolder,
@@ -51,29 +65,32 @@ public class TeamCityInspectionReporter extends BaseMessageLogger implements Ins
   public void reportInspection(@NotNull final InspectionResult inspection) {
     final InspectionInstance inspectionInstance = new InspectionInstance();
 
-    inspectionInstance.setFilePath(PathUtils.getRelativePath(myBaseFolder, inspection.getFilePath()));
+    inspectionInstance.setFilePath(getRelativePath(inspection.getFilePath()));
     inspectionInstance.setLine(inspection.getLine());
     inspectionInstance.setMessage(getValueOrUnknown(inspection.getMessage()));
     inspectionInstance.setInspectionId(getValueOrUnknown(inspection.getInspectionId()));
 
-    InspectionSeverityValues level;
+    Collection<String> level;
     switch (inspection.getPriority()) {
       case 1:
-        level = InspectionSeverityValues.ERROR;
+        level = ERROR;
         break;
       case 2:
-        level = InspectionSeverityValues.WARNING;
+        level = WARNING;
         break;
       default:
-        level = InspectionSeverityValues.INFO;
+        level = INFO;
     }
 
-    inspectionInstance.addAttribute(InspectionAttributesId.SEVERITY.toString(), Collections.singleton(level.toString()));
+    inspectionInstance.addAttribute(SEVERITY, level);
 
     myInspectionReporter.reportInspection(inspectionInstance);
   }
 
   public void reportInspectionType(@NotNull final InspectionTypeResult inspectionType) {
+    // most parsers report the inspection type along with every inspection instance
+    if (!myReportedTypes.add(inspectionType)) return;
+
     final jetbrains.buildServer.agent.inspections.InspectionTypeInfo inspectionTypeInfo = new jetbrains.buildServer.agent.inspections.InspectionTypeInfo();
 
     inspectionTypeInfo.setId(getValueOrUnknown(inspectionType.getId()));
@@ -84,6 +101,15 @@ public class TeamCityInspectionReporter extends BaseMessageLogger implements Ins
     myInspectionReporter.reportInspectionType(inspectionTypeInfo);
   }
 
+  @NotNull
+  private String getRelativePath(@Nullable String filePath) {
+    if (myLastRelativePath == null || filePath == null || !filePath.equals(myLastFilePath)) {
+      myLastFilePath = filePath;
+      myLastRelativePath = PathUtils.getRelativePath(myBaseFolder, filePath);
+    }
+    return myLastRelativePath;
+  }
+
   @NotNull
   private String getValueOrUnknown(@Nullable String val) {
     return val == null || val.trim().length() == 0 ? "<unknown>" : val;
@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import jetbrains.buildServer.util.XmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.ParseBudget;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -28,6 +29,29 @@ import org.jetbrains.annotations.Nullable;
  */
 public abstract class BaseXmlXppAbstractParser extends XmlXppAbstractParser {
 
+  /**
+   * Every matched element is a checkpoint of the parsing time limit
+   */
+  @Override
+  protected XmlHandler elementsPath(@NotNull final Handler handler, final String... names) {
+    return super.elementsPath(checkpoint(handler), names);
+  }
+
+  @Override
+  protected XmlHandler elementsPatternPath(@NotNull final Handler handler, final String... names) {
+    return super.elementsPatternPath(checkpoint(handler), names);
+  }
+
+  @NotNull
+  private static Handler checkpoint(@NotNull final Handler handler) {
+    return new Handler() {
+      public XmlReturn processElement(@NotNull final XmlElementInfo reader) {
+        ParseBudget.checkpointCurrent();
+        return handler.processElement(reader);
+      }
+    };
+  }
+
   protected abstract class ORHandler implements CloseableHandler, XmlHandler {
     private final List<XmlHandler> myDelegates;
     private boolean myMatched = false;
@@ -48,7 +48,7 @@ public class CheckstyleFactory implements ParserFactory {
 
   @NotNull
   public Parser createParser(@NotNull ParseParameters parameters) {
-    return new CheckstyleReportParser(parameters.getInspectionReporter());
+    return new CheckstyleReportParser(parameters.getInspectionReporter(), parameters.getInspectionLimits());
   }
 
   @NotNull
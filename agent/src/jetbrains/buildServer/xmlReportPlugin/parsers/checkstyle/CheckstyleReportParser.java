@@ -21,6 +21,8 @@ import java.io.IOException;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimitsExceededException;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
@@ -37,13 +39,22 @@ import org.jetbrains.annotations.Nullable;
 class CheckstyleReportParser implements Parser {
   @NotNull
   private final InspectionReporter myInspectionReporter;
+  @NotNull
+  private final InspectionLimits myLimits;
 
   private int myErrors;
   private int myWarnings;
   private int myInfos;
+  private boolean myTruncated;
 
   public CheckstyleReportParser(@NotNull final InspectionReporter inspectionReporter) {
+    this(inspectionReporter, InspectionLimits.UNLIMITED);
+  }
+
+  public CheckstyleReportParser(@NotNull final InspectionReporter inspectionReporter,
+                                @NotNull final InspectionLimits limits) {
     myInspectionReporter = inspectionReporter;
+    myLimits = limits;
   }
 
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
@@ -52,6 +63,7 @@ class CheckstyleReportParser implements Parser {
     }
 
     try {
+      final InspectionLimits.Report limits = myLimits.startReport(file, myInspectionReporter);
       new CheckstyleXmlReportParser(new CheckstyleXmlReportParser.Callback() {
         public void reportInspection(@NotNull final InspectionResult inspection) {
           switch (inspection.getPriority()) {
@@ -64,6 +76,7 @@ class CheckstyleReportParser implements Parser {
             default:
               ++myInfos;
           }
+          limits.inspectionFound(inspection.getPriority());
           myInspectionReporter.reportInspection(inspection);
         }
 
@@ -80,6 +93,9 @@ class CheckstyleReportParser implements Parser {
           myInspectionReporter.error(message);
         }
       }).parse(file);
+    } catch (InspectionLimitsExceededException e) {
+      myTruncated = true;
+      return true;
     } catch (IOException e) {
       throw new ParsingException(e);
     }
@@ -87,6 +103,6 @@ class CheckstyleReportParser implements Parser {
   }
 
   public ParsingResult getParsingResult() {
-    return new InspectionParsingResult(myErrors, myWarnings, myInfos);
+    return new InspectionParsingResult(myErrors, myWarnings, myInfos, myTruncated);
   }
 }
\ No newline at end of file
@@ -47,7 +47,8 @@ public class FindBugsFactory implements ParserFactory {
   public Parser createParser(@NotNull ParseParameters parameters) {
     final Map<String,String> params = parameters.getParameters();
     return new FindBugsReportParser(parameters.getInspectionReporter(), XmlReportPluginUtil.getFindBugsHomePath(params),
-                                    parameters.getCheckoutDir(), XmlReportPluginUtil.isFindBugsLookupFiles(params));
+                                    parameters.getCheckoutDir(), XmlReportPluginUtil.isFindBugsLookupFiles(params),
+                                    parameters.getInspectionLimits());
   }
 
   @NotNull
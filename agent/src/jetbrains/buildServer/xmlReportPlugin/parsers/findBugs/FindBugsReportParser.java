@@ -28,6 +28,8 @@ import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimitsExceededException;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
@@ -42,6 +44,9 @@ class FindBugsReportParser implements Parser {
   @NotNull
   private final InspectionReporter myInspectionReporter;
 
+  @NotNull
+  private final InspectionLimits myLimits;
+
   @NotNull
   private final File myBaseFolder;
 
@@ -51,6 +56,7 @@ class FindBugsReportParser implements Parser {
   private int myErrors;
   private int myWarnings;
   private int myInfos;
+  private boolean myTruncated;
 
   @NotNull
   private final PatternXmlParser myPatternXmlParser;
@@ -77,7 +83,16 @@ class FindBugsReportParser implements Parser {
                               @Nullable final String findBugsHome,
                               @NotNull final File baseFolder,
                               boolean lookForFiles) {
+    this(inspectionReporter, findBugsHome, baseFolder, lookForFiles, InspectionLimits.UNLIMITED);
+  }
+
+  public FindBugsReportParser(@NotNull final InspectionReporter inspectionReporter,
+                              @Nullable final String findBugsHome,
+                              @NotNull final File baseFolder,
+                              boolean lookForFiles,
+                              @NotNull final InspectionLimits limits) {
     myInspectionReporter = inspectionReporter;
+    myLimits = limits;
     myBaseFolder = baseFolder;
     myFindBugsHome = findBugsHome == null ? null : new File(findBugsHome);
 
@@ -145,6 +160,7 @@ class FindBugsReportParser implements Parser {
     }
 
     try {
+      final InspectionLimits.Report limits = myLimits.startReport(file, myInspectionReporter);
       myPatternXmlParser.parse(file);
       myCategoryXmlParser.parse(file);
 
@@ -171,6 +187,8 @@ class FindBugsReportParser implements Parser {
             default:
               ++myInfos;
           }
+          limits.inspectionFound(priority);
+
           final String cName = myCategories.containsKey(category) ? myCategories.get(category).getName() : category;
           final String descr = myCategories.containsKey(category) ? myCategories.get(category).getDescription() : null;
           final String mess = getFullMessage(message, myPatterns.containsKey(type) ? myPatterns.get(type).getDescription() : null, details);
@@ -185,6 +203,9 @@ class FindBugsReportParser implements Parser {
           myInspectionReporter.error(message);
         }
       }).parse(file);
+    } catch (InspectionLimitsExceededException e) {
+      myTruncated = true;
+      return true;
     } catch (IOException e) {
       throw new ParsingException(e);
     } finally {
@@ -202,7 +223,7 @@ class FindBugsReportParser implements Parser {
   }
 
   public ParsingResult getParsingResult() {
-    return new InspectionParsingResult(myErrors, myWarnings, myInfos);
+    return new InspectionParsingResult(myErrors, myWarnings, myInfos, myTruncated);
   }
 
   @Nullable
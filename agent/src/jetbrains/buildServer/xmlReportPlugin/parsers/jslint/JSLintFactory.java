@@ -47,7 +47,7 @@ public class JSLintFactory implements ParserFactory {
 
   @NotNull
   public Parser createParser(@NotNull final ParseParameters parameters) {
-    return new JSLintReportParser(parameters.getInspectionReporter());
+    return new JSLintReportParser(parameters.getInspectionReporter(), parameters.getInspectionLimits());
   }
 
   @NotNull
@@ -34,11 +34,20 @@ import org.jetbrains.annotations.Nullable;
 class JSLintReportParser implements Parser {
   @NotNull
   private final InspectionReporter myInspectionReporter;
+  @NotNull
+  private final InspectionLimits myLimits;
 
   private int myWarnings;
+  private boolean myTruncated;
 
   JSLintReportParser(@NotNull final InspectionReporter inspectionReporter) {
+    this(inspectionReporter, InspectionLimits.UNLIMITED);
+  }
+
+  JSLintReportParser(@NotNull final InspectionReporter inspectionReporter,
+                     @NotNull final InspectionLimits limits) {
     myInspectionReporter = inspectionReporter;
+    myLimits = limits;
   }
 
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
@@ -47,16 +56,16 @@ class JSLintReportParser implements Parser {
     }
 
     try {
+      final InspectionLimits.Report limits = myLimits.startReport(file, myInspectionReporter);
       new JSLintXmlReportParser(new JSLintXmlReportParser.Callback() {
         @Override
         public void markBuildAsInspectionsBuild() {
-          if (myInspectionReporter instanceof TeamCityInspectionReporter) {
-            ((TeamCityInspectionReporter)myInspectionReporter).markBuildAsInspectionsBuild();
-          }
+          myInspectionReporter.markBuildAsInspectionsBuild();
         }
 
         public void reportInspection(@NotNull final InspectionResult inspection) {
           ++myWarnings;
+          limits.warningFound();
           myInspectionReporter.reportInspection(inspection);
         }
 
@@ -69,6 +78,9 @@ class JSLintReportParser implements Parser {
           myInspectionReporter.error(message);
         }
       }).parse(file);
+    } catch (InspectionLimitsExceededException e) {
+      myTruncated = true;
+      return true;
     } catch (IOException e) {
       throw new ParsingException(e);
     }
@@ -76,6 +88,6 @@ class JSLintReportParser implements Parser {
   }
 
   public ParsingResult getParsingResult() {
-    return new InspectionParsingResult(0, myWarnings, 0);
+    return new InspectionParsingResult(0, myWarnings, 0, myTruncated);
   }
 }
@@ -17,7 +17,7 @@
 package jetbrains.buildServer.xmlReportPlugin.parsers.mstest;
 
 import jetbrains.buildServer.util.StringUtil;
-import jetbrains.buildServer.util.XmlXppAbstractParser;
+import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -28,7 +28,7 @@ import java.util.List;
  * @author Eugene Petrenko
  *         Created: 24.10.2008 14:21:37
  */
-class TestNamesTableParser extends XmlXppAbstractParser {
+class TestNamesTableParser extends BaseXmlXppAbstractParser {
   private final Callback myParserCallback;
 
   TestNamesTableParser(@NotNull final Callback parserCallback) {
@@ -43,7 +43,7 @@ public class PmdFactory implements ParserFactory {
 
   @NotNull
   public Parser createParser(@NotNull ParseParameters parameters) {
-    return new PmdReportParser(parameters.getInspectionReporter());
+    return new PmdReportParser(parameters.getInspectionReporter(), parameters.getInspectionLimits());
   }
 
   @NotNull
@@ -21,6 +21,8 @@ import java.io.IOException;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
 import jetbrains.buildServer.xmlReportPlugin.ParsingException;
 import jetbrains.buildServer.xmlReportPlugin.ParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimitsExceededException;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
@@ -33,13 +35,22 @@ import org.jetbrains.annotations.Nullable;
 class PmdReportParser implements Parser {
   @NotNull
   private final InspectionReporter myInspectionReporter;
+  @NotNull
+  private final InspectionLimits myLimits;
 
   private int myErrors;
   private int myWarnings;
   private int myInfos;
+  private boolean myTruncated;
 
   public PmdReportParser(@NotNull InspectionReporter inspectionReporter) {
+    this(inspectionReporter, InspectionLimits.UNLIMITED);
+  }
+
+  public PmdReportParser(@NotNull final InspectionReporter inspectionReporter,
+                         @NotNull final InspectionLimits limits) {
     myInspectionReporter = inspectionReporter;
+    myLimits = limits;
   }
 
   public boolean parse(@NotNull final File file, @Nullable final ParsingResult prevResult) throws ParsingException {
@@ -48,6 +59,7 @@ class PmdReportParser implements Parser {
     }
 
     try {
+      final InspectionLimits.Report limits = myLimits.startReport(file, myInspectionReporter);
       new PmdXmlReportParser(new PmdXmlReportParser.Callback() {
         public void reportInspection(@NotNull final InspectionResult inspection) {
           switch (inspection.getPriority()) {
@@ -60,6 +72,7 @@ class PmdReportParser implements Parser {
             default:
               ++myInfos;
           }
+          limits.inspectionFound(inspection.getPriority());
           myInspectionReporter.reportInspection(inspection);
         }
 
@@ -72,6 +85,9 @@ class PmdReportParser implements Parser {
           myInspectionReporter.error(message);
         }
       }).parse(file);
+    } catch (InspectionLimitsExceededException e) {
+      myTruncated = true;
+      return true;
     } catch (IOException e) {
       throw new ParsingException(e);
     }
@@ -79,6 +95,6 @@ class PmdReportParser implements Parser {
   }
 
   public ParsingResult getParsingResult() {
-    return new InspectionParsingResult(myErrors, myWarnings, myInfos);
+    return new InspectionParsingResult(myErrors, myWarnings, myInfos, myTruncated);
   }
 }
\ No newline at end of file
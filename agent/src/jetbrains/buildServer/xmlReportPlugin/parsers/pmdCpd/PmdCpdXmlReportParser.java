@@ -16,7 +16,9 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicatingFragment;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationResult;
 import jetbrains.buildServer.xmlReportPlugin.parsers.BaseXmlXppAbstractParser;
@@ -34,6 +36,10 @@ class PmdCpdXmlReportParser extends BaseXmlXppAbstractParser {
   private final Callback myCallback;
   private final String myRootPath;
 
+  // the same files are usually mentioned in many duplications
+  @NotNull
+  private final Map<String, String> myRelativePaths = new HashMap<String, String>();
+
   public PmdCpdXmlReportParser(@NotNull Callback callback, @NotNull String rootPath) {
     myCallback = callback;
     myRootPath = rootPath;
@@ -55,7 +61,10 @@ class PmdCpdXmlReportParser extends BaseXmlXppAbstractParser {
                 return reader.visitChildren(
                   elementsPath(new TextHandler() {
                     public void setText(@NotNull String s) {
-                      duplicationResult.setHash(s.trim().hashCode());
+                      // code fragments are large and usually start with a line break, trimming would copy them
+                      final TrimmedTextHash hash = new TrimmedTextHash();
+                      hash.append(s);
+                      duplicationResult.setHash(hash.getHash());
                     }
                   }, "codefragment"),
 
@@ -100,7 +109,12 @@ class PmdCpdXmlReportParser extends BaseXmlXppAbstractParser {
 
   @NotNull
   private String getRelativePath(final String path) {
-    return PathUtils.getRelativePath(myRootPath, path);
+    String relativePath = myRelativePaths.get(path);
+    if (relativePath == null) {
+      relativePath = PathUtils.getRelativePath(myRootPath, path);
+      myRelativePaths.put(path, relativePath);
+    }
+    return relativePath;
   }
 
   private static int getInt(@Nullable String val) {
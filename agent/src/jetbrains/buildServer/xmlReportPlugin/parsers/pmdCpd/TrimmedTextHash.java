@@ -0,0 +1,61 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jetbrains.buildServer.xmlReportPlugin.parsers.pmdCpd;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Computes the same value as {@code text.trim().hashCode()} without making a trimmed copy of the text
+ */
+final class TrimmedTextHash {
+  private boolean myStarted;
+  private int myHash;
+
+  // whitespace seen after the last non-whitespace char, becomes part of the hash only if followed by more text
+  private boolean myHasPending;
+  private int myPendingHash;
+  private int myPendingFactor = 1;
+
+  public void append(@NotNull CharSequence text) {
+    for (int i = 0; i < text.length(); ++i) {
+      append(text.charAt(i));
+    }
+  }
+
+  public void append(char c) {
+    if (c <= ' ') {
+      if (!myStarted) return;
+      myHasPending = true;
+      myPendingHash = 31 * myPendingHash + c;
+      myPendingFactor *= 31;
+      return;
+    }
+    myStarted = true;
+    if (myHasPending) {
+      myHash = myHash * myPendingFactor + myPendingHash;
+      myHasPending = false;
+      myPendingHash = 0;
+      myPendingFactor = 1;
+    }
+    myHash = 31 * myHash + c;
+  }
+
+  public int getHash() {
+    return myHash;
+  }
+}
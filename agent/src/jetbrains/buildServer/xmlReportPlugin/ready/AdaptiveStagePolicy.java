@@ -0,0 +1,122 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decides per report when it is parsed, based on its size and growth observed on monitoring runs:
+ * small reports are parsed at runtime as soon as they are found,
+ * larger ones are parsed speculatively once they didn't change during a run,
+ * reports which keep growing or grow fast are deferred and parsed only when the build step is finished.
+ *
+ * Like with other policies, a parsed report which is rewritten later is parsed again only if reparsing of updated reports
+ * is enabled, see {@link jetbrains.buildServer.xmlReportPlugin.MonitorRulesCommand}. Then it's decided again as a new one.
+ * Failed and out-of-date reports are decided again when they are updated.
+ *
+ * The policy replaces marker and stableSize ones, a report may have only one ready policy.
+ * Waiting for a run without changes is already a part of the speculative stage, a marker file is not checked.
+ */
+public class AdaptiveStagePolicy implements ReportReadyPolicy {
+  public static final int DEFAULT_SMALL_SIZE_KB = 1024;
+  public static final int GROWING_RUNS = 3;
+
+  public enum Decision {
+    RUNTIME, SPECULATIVE, DEFERRED
+  }
+
+  private final long mySmallSize;
+
+  @NotNull
+  private final Map<File, Observation> myObservations = new HashMap<File, Observation>();
+  /**
+   * The last decision made for every report, a report which is updated is decided again
+   */
+  @NotNull
+  private final Map<File, Decision> myDecisions = new HashMap<File, Decision>();
+
+  /**
+   * @param smallSizeKb reports up to this size are parsed at runtime, also the growth during a run which makes a report deferred
+   */
+  public AdaptiveStagePolicy(int smallSizeKb) {
+    mySmallSize = smallSizeKb * 1024L;
+  }
+
+  public synchronized boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot) {
+    final Observation observation = myObservations.get(file);
+    if (observation == null) {
+      if (snapshot.getLength() <= mySmallSize) return decided(file, Decision.RUNTIME);
+      myObservations.put(file, new Observation(snapshot));
+      return false;
+    }
+    if (observation.myDeferred) return false;
+
+    final long growth = snapshot.getLength() - observation.myLength;
+    if (growth == 0 && snapshot.getLastModified() == observation.myLastModified) {
+      myObservations.remove(file);
+      return decided(file, Decision.SPECULATIVE);
+    }
+
+    observation.update(snapshot);
+    if (++observation.myGrowingRuns >= GROWING_RUNS || growth > mySmallSize) {
+      observation.myDeferred = true;
+      decided(file, Decision.DEFERRED);
+    }
+    return false;
+  }
+
+  private boolean decided(@NotNull File file, @NotNull Decision decision) {
+    myDecisions.put(file, decision);
+    return decision != Decision.DEFERRED;
+  }
+
+  /**
+   * @return number of reports the decision was the last one made for
+   */
+  public synchronized int getDecisions(@NotNull Decision decision) {
+    int count = 0;
+    for (Decision made : myDecisions.values()) {
+      if (made == decision) ++count;
+    }
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return "adaptive:" + mySmallSize / 1024;
+  }
+
+  private static final class Observation {
+    private long myLength;
+    private long myLastModified;
+    private int myGrowingRuns;
+    private boolean myDeferred;
+
+    private Observation(@NotNull FileSnapshot snapshot) {
+      update(snapshot);
+    }
+
+    private void update(@NotNull FileSnapshot snapshot) {
+      myLength = snapshot.getLength();
+      myLastModified = snapshot.getLastModified();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Report is ready when a shared lock on it can be acquired, i.e. the writer doesn't hold an exclusive lock.
+ * Locks are advisory on most Unix systems, so the writer must lock the report; on Windows a report open for writing usually can't be locked.
+ */
+public class LockProbeReadyPolicy implements ReportReadyPolicy {
+  public boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot) {
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      final FileLock lock = channel.tryLock(0, Long.MAX_VALUE, true);
+      if (lock == null) return false;
+      lock.release();
+      return true;
+    } catch (OverlappingFileLockException e) {
+      // locked by this process
+      return false;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "lock";
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import java.io.File;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Report is ready when the writer creates a marker file next to it, e.g. report.xml.done,
+ * not older than the report itself
+ */
+public class MarkerFileReadyPolicy implements ReportReadyPolicy {
+  public static final String DEFAULT_SUFFIX = ".done";
+
+  @NotNull
+  private final String mySuffix;
+
+  public MarkerFileReadyPolicy(@NotNull String suffix) {
+    mySuffix = suffix;
+  }
+
+  public boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot) {
+    final File marker = new File(file.getPath() + mySuffix);
+    return marker.lastModified() >= snapshot.getLastModified();
+  }
+
+  @Override
+  public String toString() {
+    return "marker" + mySuffix;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import jetbrains.buildServer.xmlReportPlugin.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Creates report ready policies from their settings:
+ * none, marker[:suffix], stableSize[:runs], lock or adaptive[:smallSizeKb].
+ * Only one policy is set per report type, policies are not combined
+ */
+public class ReportReadyPolicies {
+  public static final String NONE = "none";
+  public static final String MARKER = "marker";
+  public static final String STABLE_SIZE = "stableSize";
+  public static final String LOCK = "lock";
+  public static final String ADAPTIVE = "adaptive";
+
+  @NotNull
+  public static ReportReadyPolicy create(@Nullable String setting) {
+    if (setting == null || setting.trim().length() == 0) return ReportReadyPolicy.ALWAYS;
+
+    setting = setting.trim();
+    final int colon = setting.indexOf(':');
+    final String name = colon < 0 ? setting : setting.substring(0, colon);
+    final String argument = colon < 0 ? null : setting.substring(colon + 1).trim();
+
+    if (NONE.equalsIgnoreCase(name)) {
+      return ReportReadyPolicy.ALWAYS;
+    }
+    if (MARKER.equalsIgnoreCase(name)) {
+      return new MarkerFileReadyPolicy(argument == null || argument.length() == 0 ? MarkerFileReadyPolicy.DEFAULT_SUFFIX : argument);
+    }
+    if (STABLE_SIZE.equalsIgnoreCase(name)) {
+      return new StableSizeReadyPolicy(parseInt(setting, argument, StableSizeReadyPolicy.DEFAULT_RUNS));
+    }
+    if (LOCK.equalsIgnoreCase(name)) {
+      return new LockProbeReadyPolicy();
+    }
+    if (ADAPTIVE.equalsIgnoreCase(name)) {
+      return new AdaptiveStagePolicy(parseInt(setting, argument, AdaptiveStagePolicy.DEFAULT_SMALL_SIZE_KB));
+    }
+
+    LoggingUtils.LOG.warn("Unknown report ready policy " + setting + ", reports are parsed as soon as they change");
+    return ReportReadyPolicy.ALWAYS;
+  }
+
+  private static int parseInt(@NotNull String setting, @Nullable String argument, int defaultValue) {
+    if (argument == null || argument.length() == 0) return defaultValue;
+    try {
+      return Integer.parseInt(argument);
+    } catch (NumberFormatException e) {
+      LoggingUtils.LOG.warn("Invalid report ready policy " + setting + ", using " + defaultValue);
+      return defaultValue;
+    }
+  }
+}
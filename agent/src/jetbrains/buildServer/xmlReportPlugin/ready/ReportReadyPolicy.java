@@ -0,0 +1,45 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import java.io.File;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tells if the report writer is done with a report, so parsing it won't fail or produce partial results.
+ * Consulted by report monitoring before a new or updated report is sent to parsing, not consulted when the build step is finished.
+ */
+public interface ReportReadyPolicy {
+  @NotNull
+  ReportReadyPolicy ALWAYS = new ReportReadyPolicy() {
+    public boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot) {
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return "none";
+    }
+  };
+
+  /**
+   * @param snapshot attributes of the report read on the current monitoring run
+   * @return true if the report can be parsed, false if it should be checked again on the next run
+   */
+  boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot);
+}
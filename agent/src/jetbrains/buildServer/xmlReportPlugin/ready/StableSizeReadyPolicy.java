@@ -0,0 +1,70 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Report is ready when its size and timestamp didn't change during the given number of monitoring runs
+ */
+public class StableSizeReadyPolicy implements ReportReadyPolicy {
+  public static final int DEFAULT_RUNS = 2;
+
+  private final int myRuns;
+
+  @NotNull
+  private final Map<File, Observation> myObservations = new HashMap<File, Observation>();
+
+  /**
+   * @param runs number of monitoring runs after the first one the report must stay unchanged
+   */
+  public StableSizeReadyPolicy(int runs) {
+    myRuns = runs;
+  }
+
+  public synchronized boolean isReady(@NotNull File file, @NotNull FileSnapshot snapshot) {
+    final Observation observation = myObservations.get(file);
+    if (observation == null || observation.myLength != snapshot.getLength() || observation.myLastModified != snapshot.getLastModified()) {
+      myObservations.put(file, new Observation(snapshot));
+      return myRuns <= 0;
+    }
+    if (++observation.myStableRuns < myRuns) return false;
+
+    myObservations.remove(file);
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "stableSize:" + myRuns;
+  }
+
+  private static final class Observation {
+    private final long myLength;
+    private final long myLastModified;
+    private int myStableRuns;
+
+    private Observation(@NotNull FileSnapshot snapshot) {
+      myLength = snapshot.getLength();
+      myLastModified = snapshot.getLastModified();
+    }
+  }
+}
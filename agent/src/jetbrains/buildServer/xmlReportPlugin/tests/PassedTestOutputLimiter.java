@@ -0,0 +1,154 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caps output of passed tests. Output of a test is held back until the test outcome is known:
+ * failed and ignored tests get their output in full, passed tests get at most limit characters.
+ */
+public class PassedTestOutputLimiter implements TestReporter {
+  @NotNull
+  private final TestReporter myDelegate;
+  private final int myLimit;
+  @NotNull
+  private final AtomicLong mySuppressedChars;
+
+  @NotNull
+  private final List<String> myPendingOutput = new ArrayList<String>();
+  @NotNull
+  private final List<Boolean> myPendingIsErr = new ArrayList<Boolean>();
+
+  private boolean myInTest;
+  private boolean myNotPassed;
+
+  /**
+   * @param limit           maximum number of output characters reported for a passed test, 0 drops the output
+   * @param suppressedChars counter of characters which were not reported
+   */
+  public PassedTestOutputLimiter(@NotNull final TestReporter delegate, int limit, @NotNull final AtomicLong suppressedChars) {
+    myDelegate = delegate;
+    myLimit = limit;
+    mySuppressedChars = suppressedChars;
+  }
+
+  public void openTestSuite(@NotNull final String name) {
+    myDelegate.openTestSuite(name);
+  }
+
+  public void openTest(@NotNull final String name) {
+    myInTest = true;
+    myNotPassed = false;
+    myDelegate.openTest(name);
+  }
+
+  public void testStdOutput(@NotNull final String text) {
+    output(text, false);
+  }
+
+  public void testErrOutput(@NotNull final String text) {
+    output(text, true);
+  }
+
+  private void output(@NotNull final String text, boolean isErr) {
+    if (!myInTest || myNotPassed) {
+      report(text, isErr);
+    } else {
+      myPendingOutput.add(text);
+      myPendingIsErr.add(isErr);
+    }
+  }
+
+  public void testFail(@Nullable final String error, @Nullable final String stacktrace) {
+    notPassed();
+    myDelegate.testFail(error, stacktrace);
+  }
+
+  public void testIgnored(@NotNull final String message) {
+    notPassed();
+    myDelegate.testIgnored(message);
+  }
+
+  private void notPassed() {
+    myNotPassed = true;
+    for (int i = 0; i < myPendingOutput.size(); ++i) {
+      report(myPendingOutput.get(i), myPendingIsErr.get(i));
+    }
+    clearPending();
+  }
+
+  public void closeTest(final long duration) {
+    int remaining = myLimit;
+    long suppressed = 0;
+    for (int i = 0; i < myPendingOutput.size(); ++i) {
+      final String text = myPendingOutput.get(i);
+      if (remaining >= text.length()) {
+        report(text, myPendingIsErr.get(i));
+        remaining -= text.length();
+      } else {
+        if (remaining > 0) {
+          report(text.substring(0, remaining) + "\n...", myPendingIsErr.get(i));
+        }
+        suppressed += text.length() - remaining;
+        remaining = 0;
+      }
+    }
+    clearPending();
+    if (suppressed > 0) mySuppressedChars.addAndGet(suppressed);
+
+    myInTest = false;
+    myDelegate.closeTest(duration);
+  }
+
+  private void clearPending() {
+    myPendingOutput.clear();
+    myPendingIsErr.clear();
+  }
+
+  private void report(@NotNull final String text, boolean isErr) {
+    if (isErr) {
+      myDelegate.testErrOutput(text);
+    } else {
+      myDelegate.testStdOutput(text);
+    }
+  }
+
+  public void closeTestSuite() {
+    myDelegate.closeTestSuite();
+  }
+
+  public void info(@NotNull final String message) {
+    myDelegate.info(message);
+  }
+
+  public void warning(@NotNull final String message) {
+    myDelegate.warning(message);
+  }
+
+  public void error(@NotNull final String message) {
+    myDelegate.error(message);
+  }
+
+  public void failure(@NotNull final String message) {
+    myDelegate.failure(message);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.tests;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers recently reported stack traces and the tests which reported them first.
+ * Shared by all reports of one monitoring rules set.
+ * The total length of the remembered traces is bounded, least recently used traces are forgotten first.
+ */
+public class StackTraceCache {
+  private static final int DEFAULT_MAX_CHARS = 1024 * 1024;
+
+  private final int myMaxChars;
+
+  @NotNull
+  private final Map<String, Entry> myTraces = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private long myChars;
+
+  private long myDuplicates;
+  private long mySavedChars;
+
+  public StackTraceCache() {
+    this(DEFAULT_MAX_CHARS);
+  }
+
+  public StackTraceCache(int maxChars) {
+    myMaxChars = maxChars;
+  }
+
+  /**
+   * @return entry for the same stack trace reported earlier by another test or null if the trace is new,
+   * in this case it's remembered as reported by the given test.
+   * A trace reported again by the same test, e.g. when its report is parsed again, is not a repeat
+   */
+  @Nullable
+  public synchronized Entry getOrRemember(@NotNull String trace, @NotNull String test) {
+    final Entry entry = myTraces.get(trace);
+    if (entry != null) {
+      if (entry.getTest().equals(test)) return null;
+      ++myDuplicates;
+      return entry;
+    }
+    if (trace.length() > myMaxChars) return null;
+
+    myTraces.put(trace, new Entry(trace, test));
+    myChars += trace.length();
+
+    final Iterator<String> it = myTraces.keySet().iterator();
+    while (myChars > myMaxChars && it.hasNext()) {
+      myChars -= it.next().length();
+      it.remove();
+    }
+    return null;
+  }
+
+  /**
+   * @return total length of the remembered stack traces
+   */
+  public synchronized long getChars() {
+    return myChars;
+  }
+
+  public synchronized void addSavedChars(long chars) {
+    mySavedChars += chars;
+  }
+
+  public synchronized long getDuplicates() {
+    return myDuplicates;
+  }
+
+  /**
+   * @return number of stack trace characters which were not sent to the build log
+   */
+  public synchronized long getSavedChars() {
+    return mySavedChars;
+  }
+
+  public static final class Entry {
+    @NotNull
+    private final String myTrace;
+    @NotNull
+    private final String myTest;
+
+    private Entry(@NotNull final String trace, @NotNull final String test) {
+      myTrace = trace;
+      myTest = test;
+    }
+
+    @NotNull
+    public String getTrace() {
+      return myTrace;
+    }
+
+    @NotNull
+    public String getTest() {
+      return myTest;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.tests;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Passes a single instance of each repeated stack trace to the underlying reporter, so that the messages
+ * waiting to be sent share one copy of it. Optionally replaces repeats with a reference to the test which reported the trace first.
+ */
+public class StackTraceDeduplicator implements TestReporter {
+  @NotNull
+  private final TestReporter myDelegate;
+  @NotNull
+  private final StackTraceCache myCache;
+  private final boolean myUseReferences;
+
+  @NotNull
+  private final Deque<String> myTests = new ArrayDeque<String>();
+
+  public StackTraceDeduplicator(@NotNull final TestReporter delegate, @NotNull final StackTraceCache cache, final boolean useReferences) {
+    myDelegate = delegate;
+    myCache = cache;
+    myUseReferences = useReferences;
+  }
+
+  public void openTestSuite(@NotNull final String name) {
+    myDelegate.openTestSuite(name);
+  }
+
+  public void openTest(@NotNull final String name) {
+    myTests.push(name);
+    myDelegate.openTest(name);
+  }
+
+  public void testStdOutput(@NotNull final String text) {
+    myDelegate.testStdOutput(text);
+  }
+
+  public void testErrOutput(@NotNull final String text) {
+    myDelegate.testErrOutput(text);
+  }
+
+  public void testFail(@Nullable final String error, @Nullable final String stacktrace) {
+    myDelegate.testFail(error, deduplicate(stacktrace));
+  }
+
+  @Nullable
+  private String deduplicate(@Nullable final String stacktrace) {
+    if (stacktrace == null || stacktrace.length() == 0 || myTests.isEmpty()) return stacktrace;
+
+    final StackTraceCache.Entry first = myCache.getOrRemember(stacktrace, myTests.peek());
+    if (first == null) return stacktrace;
+
+    if (myUseReferences) {
+      final String reference = "same as " + first.getTest();
+      if (reference.length() < stacktrace.length()) {
+        myCache.addSavedChars(stacktrace.length() - reference.length());
+        return reference;
+      }
+    }
+    return first.getTrace();
+  }
+
+  public void testIgnored(@NotNull final String message) {
+    myDelegate.testIgnored(message);
+  }
+
+  public void closeTest(final long duration) {
+    if (!myTests.isEmpty()) myTests.pop();
+    myDelegate.closeTest(duration);
+  }
+
+  public void closeTestSuite() {
+    myDelegate.closeTestSuite();
+  }
+
+  public void info(@NotNull final String message) {
+    myDelegate.info(message);
+  }
+
+  public void warning(@NotNull final String message) {
+    myDelegate.warning(message);
+  }
+
+  public void error(@NotNull final String message) {
+    myDelegate.error(message);
+  }
+
+  public void failure(@NotNull final String message) {
+    myDelegate.failure(message);
+  }
+}
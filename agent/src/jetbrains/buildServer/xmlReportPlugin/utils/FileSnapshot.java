@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable snapshot of file attributes read with a single file system call
+ */
+public final class FileSnapshot {
+  /**
+   * Reads file attributes, may be replaced in tests
+   */
+  public interface Reader {
+    /**
+     * @return attributes of the file or null if the file doesn't exist or its attributes can't be read
+     */
+    @Nullable
+    FileSnapshot read(@NotNull File file);
+
+    boolean canRead(@NotNull File file);
+  }
+
+  @NotNull
+  public static final Reader DEFAULT_READER = new Reader() {
+    @Nullable
+    public FileSnapshot read(@NotNull File file) {
+      try {
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return new FileSnapshot(attributes.isRegularFile(), attributes.size(), attributes.lastModifiedTime().toMillis());
+      } catch (IOException e) {
+        return null;
+      } catch (UnsupportedOperationException e) {
+        return null;
+      }
+    }
+
+    public boolean canRead(@NotNull File file) {
+      return file.canRead();
+    }
+  };
+
+  private final boolean myIsFile;
+  private final long myLength;
+  private final long myLastModified;
+
+  public FileSnapshot(boolean isFile, long length, long lastModified) {
+    myIsFile = isFile;
+    myLength = length;
+    myLastModified = lastModified;
+  }
+
+  public boolean isFile() {
+    return myIsFile;
+  }
+
+  public long getLength() {
+    return myLength;
+  }
+
+  public long getLastModified() {
+    return myLastModified;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects files matching include/exclude rules walking directories in parallel in a fork/join pool.
+ * Each directory is listed in its own task, subdirectories no include rule can match under
+ * and subdirectories completely excluded by a more specific exclude rule are not visited.
+ * Symbolic links are followed, a link to a directory which is already being walked above is skipped.
+ * Rules are matched with a {@link RulesAutomaton}, its state is advanced by one name per walked entry.
+ */
+public class ParallelFileCollector {
+  @NotNull
+  private final ForkJoinPool myPool;
+
+  public ParallelFileCollector(@NotNull ForkJoinPool pool) {
+    myPool = pool;
+  }
+
+  @NotNull
+  public List<File> collect(@NotNull final RulesAutomaton rules) {
+    final Queue<File> result = new ConcurrentLinkedQueue<File>();
+    final List<ScanTask> tasks = new ArrayList<ScanTask>();
+
+    for (File root : rules.getRoots()) {
+      final Path path = root.toPath();
+      final BasicFileAttributes attributes = readAttributes(path);
+      if (attributes == null) continue;
+
+      final String[] segments = RulePattern.split(root.getAbsolutePath());
+      if (attributes.isDirectory()) {
+        final RulesAutomaton.State state = rules.getState(segments);
+        final Object key = getKey(path, attributes);
+        if (key != null && state.mayIncludeUnder()) tasks.add(new ScanTask(path, state, new Ancestor(key, null), result));
+      } else if (attributes.isRegularFile() && rules.isIncluded(segments)) {
+        result.add(root);
+      }
+    }
+
+    if (!tasks.isEmpty()) {
+      myPool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+    }
+
+    final List<File> files = new ArrayList<File>(result);
+    Collections.sort(files);
+    return files;
+  }
+
+  @Nullable
+  private static BasicFileAttributes readAttributes(@NotNull Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return null;
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return identity of the directory used to detect symbolic link loops
+   */
+  @Nullable
+  private static Object getKey(@NotNull Path dir, @NotNull BasicFileAttributes attributes) {
+    final Object key = attributes.fileKey();
+    if (key != null) return key;
+    try {
+      return dir.toRealPath().toString();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static final class Ancestor {
+    @NotNull
+    private final Object myKey;
+    @Nullable
+    private final Ancestor myParent;
+
+    private Ancestor(@NotNull Object key, @Nullable Ancestor parent) {
+      myKey = key;
+      myParent = parent;
+    }
+
+    private boolean contains(@NotNull Object key) {
+      for (Ancestor a = this; a != null; a = a.myParent) {
+        if (a.myKey.equals(key)) return true;
+      }
+      return false;
+    }
+  }
+
+  private static final class ScanTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    private final Path myDir;
+    @NotNull
+    private final RulesAutomaton.State myState;
+    @NotNull
+    private final Ancestor myAncestors;
+    @NotNull
+    private final Queue<File> myResult;
+
+    private ScanTask(@NotNull Path dir,
+                     @NotNull RulesAutomaton.State state,
+                     @NotNull Ancestor ancestors,
+                     @NotNull Queue<File> result) {
+      myDir = dir;
+      myState = state;
+      myAncestors = ancestors;
+      myResult = result;
+    }
+
+    @Override
+    protected void compute() {
+      final List<ScanTask> subtasks = new ArrayList<ScanTask>();
+      DirectoryStream<Path> stream = null;
+      try {
+        stream = Files.newDirectoryStream(myDir);
+        for (Path child : stream) {
+          final BasicFileAttributes attributes = readAttributes(child);
+          if (attributes == null) continue;
+
+          final String name = child.getFileName().toString();
+          if (attributes.isDirectory()) {
+            final RulesAutomaton.State state = myState.child(name);
+            if (!state.mayIncludeUnder()) continue;
+
+            final Object key = getKey(child, attributes);
+            if (key == null || myAncestors.contains(key)) continue;
+
+            subtasks.add(new ScanTask(child, state, new Ancestor(key, myAncestors), myResult));
+          } else if (attributes.isRegularFile() && myState.isIncluded(name)) {
+            myResult.add(child.toFile());
+          }
+        }
+      } catch (IOException e) {
+        LoggingUtils.LOG.debug("Failed to list " + myDir, e);
+      } catch (DirectoryIteratorException e) {
+        LoggingUtils.LOG.debug("Failed to list " + myDir, e);
+      } finally {
+        if (stream != null) {
+          try {
+            stream.close();
+          } catch (IOException ignored) {
+          }
+        }
+      }
+      invokeAll(subtasks);
+    }
+  }
+}
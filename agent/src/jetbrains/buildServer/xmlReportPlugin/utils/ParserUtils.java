@@ -21,6 +21,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.util.XmlUtil;
+import jetbrains.buildServer.xmlReportPlugin.ParseBudget;
+import jetbrains.buildServer.xmlReportPlugin.ParseTimeoutException;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -90,6 +92,8 @@ public class ParserUtils {
       return handler.isReportComplete();
     } catch (SAXParseException e) {
       return false;
+    } catch (ParseTimeoutException e) {
+      throw e;
     } catch (Exception e) {
       return true;
     }
@@ -125,6 +129,8 @@ public class ParserUtils {
 
     @Override
     public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+      // the whole report is read here, so the parsing time limit is checked as well
+      ParseBudget.checkpointCurrent();
       if (myDepth == 0) {
         if (myRootTag == null) myRootTag = localName;
         if (myRootTag.equals(localName)) myRightStart = true;
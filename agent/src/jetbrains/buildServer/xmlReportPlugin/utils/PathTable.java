@@ -0,0 +1,170 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compact set of file paths, each path gets a sequential int id.
+ * Directory part of the paths is stored once per directory, so reports lying in the same directory
+ * cost only their names. Lookups don't allocate. Not thread-safe.
+ */
+public class PathTable {
+  public static final int NOT_FOUND = -1;
+
+  @NotNull
+  private String[] myDirs = new String[16];
+  private int myDirCount;
+  @NotNull
+  private int[] myDirIndex = newIndex(32);
+
+  @NotNull
+  private String[] myNames = new String[16];
+  @NotNull
+  private int[] myNameDirs = new int[16];
+  private int mySize;
+  @NotNull
+  private int[] myIndex = newIndex(32);
+
+  /**
+   * @return id of the path or NOT_FOUND
+   */
+  public int find(@NotNull String path) {
+    final int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+    final int dir = findDir(path, nameStart, hash(path, 0, nameStart));
+    if (dir == NOT_FOUND) return NOT_FOUND;
+    return myIndex[findSlot(dir, path, nameStart, hash(path, nameStart, path.length()))];
+  }
+
+  /**
+   * @return id of the path, a new one if the path was not added yet
+   */
+  public int add(@NotNull String path) {
+    final int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+    final int dirHash = hash(path, 0, nameStart);
+    int dir = findDir(path, nameStart, dirHash);
+    if (dir == NOT_FOUND) dir = addDir(path.substring(0, nameStart), dirHash);
+
+    final int nameHash = hash(path, nameStart, path.length());
+    final int slot = findSlot(dir, path, nameStart, nameHash);
+    if (myIndex[slot] != NOT_FOUND) return myIndex[slot];
+
+    if (mySize == myNames.length) {
+      myNames = Arrays.copyOf(myNames, mySize * 2);
+      myNameDirs = Arrays.copyOf(myNameDirs, mySize * 2);
+    }
+    final int id = mySize++;
+    myNames[id] = path.substring(nameStart);
+    myNameDirs[id] = dir;
+    myIndex[slot] = id;
+    if (mySize * 2 > myIndex.length) rehashNames();
+    return id;
+  }
+
+  @NotNull
+  public String getPath(int id) {
+    return myDirs[myNameDirs[id]] + myNames[id];
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public int getDirCount() {
+    return myDirCount;
+  }
+
+  private int findDir(@NotNull String path, int length, int hash) {
+    final int mask = myDirIndex.length - 1;
+    for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+      final int dir = myDirIndex[slot];
+      if (dir == NOT_FOUND) return NOT_FOUND;
+      final String candidate = myDirs[dir];
+      if (candidate.length() == length && path.regionMatches(0, candidate, 0, length)) return dir;
+    }
+  }
+
+  private int addDir(@NotNull String dir, int hash) {
+    if (myDirCount == myDirs.length) myDirs = Arrays.copyOf(myDirs, myDirCount * 2);
+    final int id = myDirCount++;
+    myDirs[id] = dir;
+    if (myDirCount * 2 > myDirIndex.length) {
+      myDirIndex = newIndex(myDirIndex.length * 2);
+      for (int i = 0; i < myDirCount; ++i) {
+        myDirIndex[freeSlot(myDirIndex, spread(myDirs[i].hashCode()))] = i;
+      }
+    } else {
+      myDirIndex[freeSlot(myDirIndex, spread(hash))] = id;
+    }
+    return id;
+  }
+
+  private int findSlot(int dir, @NotNull String path, int nameStart, int nameHash) {
+    final int nameLength = path.length() - nameStart;
+    final int mask = myIndex.length - 1;
+    for (int slot = mix(dir, nameHash) & mask; ; slot = (slot + 1) & mask) {
+      final int id = myIndex[slot];
+      if (id == NOT_FOUND) return slot;
+      if (myNameDirs[id] == dir) {
+        final String name = myNames[id];
+        if (name.length() == nameLength && path.regionMatches(nameStart, name, 0, nameLength)) return slot;
+      }
+    }
+  }
+
+  private void rehashNames() {
+    myIndex = newIndex(myIndex.length * 2);
+    for (int i = 0; i < mySize; ++i) {
+      myIndex[freeSlot(myIndex, mix(myNameDirs[i], myNames[i].hashCode()))] = i;
+    }
+  }
+
+  private static int freeSlot(@NotNull int[] index, int hash) {
+    final int mask = index.length - 1;
+    int slot = hash & mask;
+    while (index[slot] != NOT_FOUND) slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  @NotNull
+  private static int[] newIndex(int size) {
+    final int[] index = new int[size];
+    Arrays.fill(index, NOT_FOUND);
+    return index;
+  }
+
+  /**
+   * Same as String.hashCode of the substring
+   */
+  private static int hash(@NotNull String s, int from, int to) {
+    int h = 0;
+    for (int i = from; i < to; ++i) {
+      h = 31 * h + s.charAt(i);
+    }
+    return h;
+  }
+
+  private static int mix(int dir, int nameHash) {
+    return spread(nameHash * 31 + dir);
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+}
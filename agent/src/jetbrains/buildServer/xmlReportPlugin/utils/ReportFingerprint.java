@@ -0,0 +1,126 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Content fingerprints of report files: size plus digest of the whole content
+ */
+public class ReportFingerprint {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * @return fingerprint of the file content or null if the file can't be read
+   */
+  @Nullable
+  public static String compute(@NotNull File file) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      LoggingUtils.LOG.warn("Failed to compute fingerprint of " + file, e);
+      return null;
+    }
+
+    InputStream is = null;
+    long size = 0;
+    try {
+      is = new FileInputStream(file);
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = is.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+        size += read;
+      }
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to compute fingerprint of " + file, e);
+      return null;
+    } finally {
+      FileUtil.close(is);
+    }
+    return size + ":" + toHex(digest.digest());
+  }
+
+  /**
+   * Cheap signature of the file content: length plus digest of the first and the last depth bytes
+   *
+   * @return signature of the file or null if the file can't be read
+   */
+  @Nullable
+  public static String computeSignature(@NotNull File file, int depth) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      LoggingUtils.LOG.warn("Failed to compute signature of " + file, e);
+      return null;
+    }
+
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      final long length = raf.length();
+      final int head = (int)Math.min(depth, length);
+      final int tail = (int)Math.min(depth, length - head);
+
+      final byte[] buffer = new byte[head + tail];
+      raf.readFully(buffer, 0, head);
+      raf.seek(length - tail);
+      raf.readFully(buffer, head, tail);
+      digest.update(buffer);
+      return length + ":" + toHex(digest.digest());
+    } catch (IOException e) {
+      LoggingUtils.LOG.debug("Failed to compute signature of " + file, e);
+      return null;
+    } finally {
+      FileUtil.close(raf);
+    }
+  }
+
+  /**
+   * @return digest of the given text
+   */
+  @NotNull
+  public static String hash(@NotNull String text) {
+    try {
+      return toHex(MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8")));
+    } catch (Exception e) {
+      return Integer.toHexString(text.hashCode()) + Integer.toHexString(text.length());
+    }
+  }
+
+  @NotNull
+  static String toHex(@NotNull byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; ++i) {
+      chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Exponential backoff with jitter for retrying reports which failed to be processed.
+ * The delay after the n-th consecutive failure is base * 2^(n-1) limited by max,
+ * half of it is randomized so reports failed together are not retried together.
+ */
+public class RetryBackoff {
+  @NotNull
+  public static final RetryBackoff NONE = new RetryBackoff(0, 0);
+
+  private final long myBaseDelay;
+  private final long myMaxDelay;
+  @NotNull
+  private final Random myRandom = new Random();
+
+  /**
+   * @param baseDelay delay after the first failure in milliseconds, 0 means retry on any change
+   * @param maxDelay  maximum delay in milliseconds
+   */
+  public RetryBackoff(long baseDelay, long maxDelay) {
+    myBaseDelay = baseDelay;
+    myMaxDelay = Math.max(baseDelay, maxDelay);
+  }
+
+  /**
+   * @param failures number of consecutive failures, at least 1
+   * @return delay before the next retry in milliseconds
+   */
+  public long getDelay(int failures) {
+    if (myBaseDelay <= 0) return 0;
+
+    final int shift = Math.min(Math.max(failures - 1, 0), 30);
+    final long delay = Math.min(myMaxDelay, myBaseDelay << shift);
+    final long half = delay / 2;
+    synchronized (myRandom) {
+      return delay - half + (half > 0 ? (long)(myRandom.nextDouble() * half) : 0);
+    }
+  }
+}
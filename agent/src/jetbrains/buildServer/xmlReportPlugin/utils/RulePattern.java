@@ -0,0 +1,163 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Single include (+:) or exclude (-:) report rule resolved against the base directory and split into path segments.
+ * Supports Ant-style wildcards: ? and * inside a segment and ** for any number of segments.
+ * A rule without wildcards matches the path itself and everything under it.
+ */
+public final class RulePattern {
+  @NotNull
+  private final String myRule;
+  private final boolean myInclude;
+  @NotNull
+  private final String[] mySegments;
+  /**
+   * Number of leading segments without wildcards, the rule root
+   */
+  private final int myRootLength;
+  private final int myIndex;
+
+  private RulePattern(@NotNull String rule, boolean include, @NotNull String[] segments, int index) {
+    myRule = rule;
+    myInclude = include;
+    mySegments = segments;
+    myIndex = index;
+
+    int rootLength = 0;
+    while (rootLength < segments.length && !isPattern(segments[rootLength])) ++rootLength;
+    myRootLength = rootLength;
+  }
+
+  @NotNull
+  public static List<RulePattern> compile(@NotNull File baseDir, @NotNull Iterable<String> rules) {
+    final List<RulePattern> patterns = new ArrayList<RulePattern>();
+    final String base = baseDir.getAbsolutePath();
+    for (String rule : rules) {
+      final boolean include = !rule.startsWith("-:");
+      final String path = (rule.startsWith("+:") || rule.startsWith("-:") ? rule.substring(2) : rule).trim();
+      if (path.length() == 0) continue;
+
+      patterns.add(new RulePattern(rule, include, split(isAbsolute(path) ? path : base + "/" + path), patterns.size()));
+    }
+    return patterns;
+  }
+
+  public boolean isInclude() {
+    return myInclude;
+  }
+
+  /**
+   * @return directory with no wildcards above, the only place the rule can match files in
+   */
+  @NotNull
+  public File getRoot() {
+    return toFile(mySegments, myRootLength);
+  }
+
+  @NotNull
+  static File toFile(@NotNull String[] segments, int length) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; ++i) {
+      if (i > 0 || !segments[0].endsWith(":")) sb.append('/');
+      sb.append(segments[i]);
+    }
+    return new File(sb.length() == 0 ? "/" : sb.toString());
+  }
+
+  /**
+   * Rules with longer roots are more specific, the later rule is more specific among rules with equal roots
+   *
+   * @return true if this rule has priority over the other one when both match a path
+   */
+  public boolean isMoreSpecificThan(@NotNull RulePattern other) {
+    return myRootLength != other.myRootLength ? myRootLength > other.myRootLength : myIndex > other.myIndex;
+  }
+
+  /**
+   * @return absolute path segments of the rule
+   */
+  @NotNull
+  public String[] getSegments() {
+    return mySegments.clone();
+  }
+
+  /**
+   * @return false if the rule is a plain path which matches the path itself and everything under it
+   */
+  public boolean hasWildcards() {
+    return myRootLength < mySegments.length;
+  }
+
+  static boolean matchSegment(@NotNull String pattern, @NotNull String name) {
+    return matchSegment(pattern, 0, name, 0);
+  }
+
+  private static boolean matchSegment(@NotNull String pattern, int p, @NotNull String name, int n) {
+    while (p < pattern.length()) {
+      final char c = pattern.charAt(p);
+      if (c == '*') {
+        while (p < pattern.length() && pattern.charAt(p) == '*') ++p;
+        if (p == pattern.length()) return true;
+        for (int i = n; i < name.length(); ++i) {
+          if (matchSegment(pattern, p, name, i)) return true;
+        }
+        return false;
+      }
+      if (n == name.length() || c != '?' && c != name.charAt(n)) return false;
+      ++p;
+      ++n;
+    }
+    return n == name.length();
+  }
+
+  public static boolean isPattern(@NotNull String segment) {
+    return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+  }
+
+  private static boolean isAbsolute(@NotNull String path) {
+    return path.startsWith("/") || path.startsWith("\\") || path.length() > 1 && path.charAt(1) == ':';
+  }
+
+  /**
+   * Splits the path into segments, skips . segments and resolves .. segments
+   */
+  @NotNull
+  public static String[] split(@NotNull String path) {
+    final List<String> segments = new ArrayList<String>();
+    for (String segment : path.replace('\\', '/').split("/")) {
+      if (segment.length() == 0 || ".".equals(segment)) continue;
+      if ("..".equals(segment) && !segments.isEmpty() && !"..".equals(segments.get(segments.size() - 1))) {
+        segments.remove(segments.size() - 1);
+        continue;
+      }
+      segments.add(segment);
+    }
+    return segments.toArray(new String[segments.size()]);
+  }
+
+  @Override
+  public String toString() {
+    return myRule;
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Include/exclude rules compiled into a single automaton over path segments.
+ * Rules share nodes for common leading segments, so a path is matched against all rules in one pass.
+ * Directory walkers keep a {@link State} per directory and advance it by one name per child,
+ * the state tells if the child file is included and if anything under the child directory can be included.
+ */
+public final class RulesAutomaton {
+  private static final String ANY_PATH = "**";
+
+  @NotNull
+  private final Node myRoot = new Node(null);
+  @NotNull
+  private final List<File> myRoots;
+  /**
+   * Include flags of rules ordered by priority, the more specific rule the greater the rank
+   */
+  @NotNull
+  private final boolean[] myIncludeByRank;
+
+  private RulesAutomaton(@NotNull List<RulePattern> rules) {
+    final List<RulePattern> ranked = new ArrayList<RulePattern>(rules);
+    Collections.sort(ranked, new Comparator<RulePattern>() {
+      public int compare(final RulePattern o1, final RulePattern o2) {
+        return o1 == o2 ? 0 : o1.isMoreSpecificThan(o2) ? 1 : -1;
+      }
+    });
+
+    myIncludeByRank = new boolean[ranked.size()];
+    for (int rank = 0; rank < ranked.size(); ++rank) {
+      final RulePattern rule = ranked.get(rank);
+      myIncludeByRank[rank] = rule.isInclude();
+
+      final String[] segments = rule.getSegments();
+      final Node node = add(myRoot, segments, 0);
+      node.addTerminal(rank, rule.isInclude());
+      if (!rule.hasWildcards()) {
+        // a rule without wildcards matches everything under the path as well
+        node.child(ANY_PATH).addTerminal(rank, rule.isInclude());
+      }
+    }
+    myRoot.computeRanks();
+    myRoots = computeRoots(rules);
+  }
+
+  @NotNull
+  public static RulesAutomaton compile(@NotNull File baseDir, @NotNull Iterable<String> rules) {
+    return new RulesAutomaton(RulePattern.compile(baseDir, rules));
+  }
+
+  @NotNull
+  public static RulesAutomaton compile(@NotNull List<RulePattern> rules) {
+    return new RulesAutomaton(rules);
+  }
+
+  @NotNull
+  private static Node add(@NotNull Node node, @NotNull String[] segments, int index) {
+    for (int i = index; i < segments.length; ++i) {
+      // **/** is the same as **
+      if (ANY_PATH.equals(segments[i]) && ANY_PATH.equals(node.myLabel)) continue;
+      node = node.child(segments[i]);
+    }
+    return node;
+  }
+
+  /**
+   * @return directories to walk, roots of include rules lying under roots of other include rules are skipped
+   */
+  @NotNull
+  public List<File> getRoots() {
+    return myRoots;
+  }
+
+  @NotNull
+  private static List<File> computeRoots(@NotNull List<RulePattern> rules) {
+    final List<String[]> roots = new ArrayList<String[]>();
+    for (RulePattern rule : rules) {
+      if (rule.isInclude()) roots.add(RulePattern.split(rule.getRoot().getAbsolutePath()));
+    }
+    Collections.sort(roots, new Comparator<String[]>() {
+      public int compare(final String[] o1, final String[] o2) {
+        return o1.length - o2.length;
+      }
+    });
+
+    final List<File> result = new ArrayList<File>();
+    final List<String[]> taken = new ArrayList<String[]>();
+    for (String[] root : roots) {
+      if (isUnderAny(root, taken)) continue;
+      taken.add(root);
+      result.add(RulePattern.toFile(root, root.length));
+    }
+    return result;
+  }
+
+  private static boolean isUnderAny(@NotNull String[] path, @NotNull List<String[]> dirs) {
+    for (String[] dir : dirs) {
+      if (dir.length > path.length) continue;
+      boolean under = true;
+      for (int i = 0; i < dir.length && under; ++i) {
+        under = dir[i].equals(path[i]);
+      }
+      if (under) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param path absolute path segments
+   * @return state of the automaton after matching the path
+   */
+  @NotNull
+  public State getState(@NotNull String[] path) {
+    final List<Node> start = new ArrayList<Node>();
+    start.add(myRoot);
+    State state = new State(closure(start));
+    for (String name : path) {
+      state = state.child(name);
+    }
+    return state;
+  }
+
+  /**
+   * @param path absolute path segments of a file
+   */
+  public boolean isIncluded(@NotNull String[] path) {
+    if (path.length == 0) return false;
+    return getState(Arrays.copyOf(path, path.length - 1)).isIncluded(path[path.length - 1]);
+  }
+
+  @NotNull
+  private static List<Node> closure(@NotNull List<Node> nodes) {
+    for (int i = 0; i < nodes.size(); ++i) {
+      final Node anyPath = nodes.get(i).myAnyPathChild;
+      if (anyPath != null && !nodes.contains(anyPath)) nodes.add(anyPath);
+    }
+    return nodes;
+  }
+
+  /**
+   * Set of automaton nodes matched by a path
+   */
+  public final class State {
+    @NotNull
+    private final List<Node> myNodes;
+
+    private State(@NotNull List<Node> nodes) {
+      myNodes = nodes;
+    }
+
+    /**
+     * @return state for the child with the given name
+     */
+    @NotNull
+    public State child(@NotNull String name) {
+      final List<Node> next = new ArrayList<Node>(myNodes.size() + 1);
+      for (Node node : myNodes) {
+        if (node.isAnyPath()) add(next, node);
+        if (node.myLiteralChildren != null) {
+          final Node literal = node.myLiteralChildren.get(name);
+          if (literal != null) add(next, literal);
+        }
+        if (node.myPatternChildren != null) {
+          for (Node pattern : node.myPatternChildren) {
+            if (RulePattern.matchSegment(pattern.myLabel, name)) add(next, pattern);
+          }
+        }
+      }
+      return new State(closure(next));
+    }
+
+    /**
+     * @return true if the file with the given name in the current directory is included
+     */
+    public boolean isIncluded(@NotNull String name) {
+      int winner = -1;
+      for (Node node : child(name).myNodes) {
+        winner = Math.max(winner, node.myTerminalRank);
+      }
+      return winner >= 0 && myIncludeByRank[winner];
+    }
+
+    /**
+     * @return true if some path under the current directory may be included,
+     * false if no include rule can match under it or it's completely excluded by a more specific exclude rule
+     */
+    public boolean mayIncludeUnder() {
+      int include = -1;
+      int exclude = -1;
+      for (Node node : myNodes) {
+        include = Math.max(include, node.myIncludeRankBelow);
+        exclude = Math.max(exclude, node.myCoverExcludeRank);
+      }
+      return include >= 0 && include > exclude;
+    }
+
+    private void add(@NotNull List<Node> nodes, @NotNull Node node) {
+      if (!nodes.contains(node)) nodes.add(node);
+    }
+  }
+
+  private static final class Node {
+    @Nullable
+    private final String myLabel;
+    @Nullable
+    private Map<String, Node> myLiteralChildren;
+    @Nullable
+    private List<Node> myPatternChildren;
+    @Nullable
+    private Node myAnyPathChild;
+
+    /**
+     * Greatest rank of rules ending at this node
+     */
+    private int myTerminalRank = -1;
+    private int myTerminalIncludeRank = -1;
+    private int myTerminalExcludeRank = -1;
+    /**
+     * Greatest rank of include rules which may match under the path matched by this node
+     */
+    private int myIncludeRankBelow = -1;
+    /**
+     * Greatest rank of exclude rules matching everything under the path matched by this node
+     */
+    private int myCoverExcludeRank = -1;
+
+    private Node(@Nullable String label) {
+      myLabel = label;
+    }
+
+    private boolean isAnyPath() {
+      return ANY_PATH.equals(myLabel);
+    }
+
+    @NotNull
+    private Node child(@NotNull String label) {
+      if (ANY_PATH.equals(label)) {
+        if (myAnyPathChild == null) myAnyPathChild = new Node(label);
+        return myAnyPathChild;
+      }
+      if (RulePattern.isPattern(label)) {
+        if (myPatternChildren == null) myPatternChildren = new ArrayList<Node>(2);
+        for (Node child : myPatternChildren) {
+          if (label.equals(child.myLabel)) return child;
+        }
+        final Node child = new Node(label);
+        myPatternChildren.add(child);
+        return child;
+      }
+      if (myLiteralChildren == null) myLiteralChildren = new HashMap<String, Node>(4);
+      Node child = myLiteralChildren.get(label);
+      if (child == null) {
+        child = new Node(label);
+        myLiteralChildren.put(label, child);
+      }
+      return child;
+    }
+
+    private void addTerminal(int rank, boolean include) {
+      myTerminalRank = Math.max(myTerminalRank, rank);
+      if (include) {
+        myTerminalIncludeRank = Math.max(myTerminalIncludeRank, rank);
+      } else {
+        myTerminalExcludeRank = Math.max(myTerminalExcludeRank, rank);
+      }
+    }
+
+    /**
+     * @return greatest rank of include rules which may match the path matched by this node or paths under it
+     */
+    private int computeRanks() {
+      int below = -1;
+      if (myLiteralChildren != null) {
+        for (Node child : myLiteralChildren.values()) {
+          below = Math.max(below, child.computeRanks());
+        }
+      }
+      if (myPatternChildren != null) {
+        for (Node child : myPatternChildren) {
+          below = Math.max(below, child.computeRanks());
+        }
+      }
+      if (myAnyPathChild != null) {
+        below = Math.max(below, myAnyPathChild.computeRanks());
+      }
+
+      if (isAnyPath()) {
+        below = Math.max(below, myTerminalIncludeRank);
+
+        // ** and **/* match every path under the directory
+        myCoverExcludeRank = myTerminalExcludeRank;
+        if (myPatternChildren != null) {
+          for (Node child : myPatternChildren) {
+            if ("*".equals(child.myLabel)) myCoverExcludeRank = Math.max(myCoverExcludeRank, child.myTerminalExcludeRank);
+          }
+        }
+      }
+      myIncludeRankBelow = below;
+      return Math.max(below, myTerminalIncludeRank);
+    }
+  }
+}
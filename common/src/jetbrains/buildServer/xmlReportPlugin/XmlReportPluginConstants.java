@@ -24,11 +24,16 @@ package jetbrains.buildServer.xmlReportPlugin;
 public interface XmlReportPluginConstants {
   static final String REPORT_TYPE = "xmlReportParsing.reportType";
   static final String REPORT_DIRS = "xmlReportParsing.reportDirs";
+  static final String REPORT_MANIFEST = "xmlReportParsing.reportManifest";
 
   static final String VERBOSE_OUTPUT = "xmlReportParsing.verboseOutput";
 
   static final String MAX_ERRORS = "xmlReportParsing.max.errors";
   static final String MAX_WARNINGS = "xmlReportParsing.max.warnings";
+  static final String FAIL_FAST_INSPECTIONS = "xmlReportParsing.max.failFast";
+
+  static final String PASSED_TEST_OUTPUT_LIMIT = "xmlReportParsing.passedTestOutput.limit";
+  static final String STACK_TRACE_REFERENCES = "xmlReportParsing.stackTrace.references";
 
   static final String FINDBUGS_HOME = "xmlReportParsing.findBugs.home";
   static final String FINDBUGS_LOOKUP_FILES = "xmlReportParsing.findBugs.lookup.files";
@@ -39,6 +44,8 @@ public interface XmlReportPluginConstants {
   static final String LOG_AS_INTERNAL = "xmlReportParsing.logAsInternal";
   static final String LOG_INTERNAL_SYSTEM_ERROR = "xmlReportParsing.logInternalSystemError";
   static final String REPARSE_UPDATED = "xmlReportParsing.reparse.updated";
+  static final String SKIP_DUPLICATES = "xmlReportParsing.skipDuplicates";
+  static final String READY_POLICY = "xmlReportParsing.readyPolicy";
 
   static final String QUIET_MODE = "xmlReportParsing.quietMode";
 
@@ -29,6 +29,15 @@ public class XmlReportPluginUtil {
                                                                       "pmd",
                                                                       "checkstyle",
                                                                       "jslint");
+  private static final List<String> TEST_TYPES = Arrays.asList("junit",
+                                                               "nunit",
+                                                               "surefire",
+                                                               "mstest",
+                                                               "vstest",
+                                                               "trx",
+                                                               "gtest",
+                                                               "ctest",
+                                                               "testng");
 
   static {
     final Map<String, String> reportTypes = new HashMap<String, String>();
@@ -71,27 +80,55 @@ public class XmlReportPluginUtil {
     return params.get(REPORT_DIRS);
   }
 
+  /**
+   * @return true if the report paths setting is a path to a manifest file listing completed reports
+   */
+  public static boolean isReportManifest(@NotNull final Map<String, String> params) {
+    return Boolean.parseBoolean(params.get(REPORT_MANIFEST));
+  }
+
   @Nullable
   public static String getReportType(@NotNull final Map<String, String> params) {
     return params.get(REPORT_TYPE);
   }
 
   public static int getMaxErrors(@NotNull final Map<String, String> params) {
-    return getMaxErrorsOrWarnings(params, MAX_ERRORS);
+    return getLimit(params, MAX_ERRORS);
   }
 
   public static int getMaxWarnings(@NotNull final Map<String, String> params) {
-    return getMaxErrorsOrWarnings(params, MAX_WARNINGS);
+    return getLimit(params, MAX_WARNINGS);
+  }
+
+  public static boolean isStackTraceReferences(@NotNull final Map<String, String> params) {
+    return Boolean.parseBoolean(params.get(STACK_TRACE_REFERENCES));
   }
 
-  private static int getMaxErrorsOrWarnings(@NotNull final Map<String, String> params, String what) {
-    String errorsCount = params.get(what);
-    if (StringUtil.isNotEmpty(errorsCount)) {
-      if (!StringUtil.isNumber(errorsCount)) {
+  public static boolean isSkipDuplicates(@NotNull final Map<String, String> params) {
+    return Boolean.parseBoolean(params.get(SKIP_DUPLICATES));
+  }
+
+  @Nullable
+  public static String getReadyPolicy(@NotNull final Map<String, String> params) {
+    return params.get(READY_POLICY);
+  }
+
+  public static int getPassedTestOutputLimit(@NotNull final Map<String, String> params) {
+    return getLimit(params, PASSED_TEST_OUTPUT_LIMIT);
+  }
+
+  public static boolean isFailFastInspections(@NotNull final Map<String, String> params) {
+    return Boolean.parseBoolean(params.get(FAIL_FAST_INSPECTIONS));
+  }
+
+  private static int getLimit(@NotNull final Map<String, String> params, String what) {
+    String limit = params.get(what);
+    if (StringUtil.isNotEmpty(limit)) {
+      if (!StringUtil.isNumber(limit)) {
         return -1;
       }
       try {
-        return Integer.parseInt(errorsCount);
+        return Integer.parseInt(limit);
       } catch (NumberFormatException e) {
         return -1;
       }
@@ -130,6 +167,10 @@ public class XmlReportPluginUtil {
     return INSPECTIONS_TYPES.contains(type);
   }
 
+  public static boolean isTestType(@NotNull String type) {
+    return TEST_TYPES.contains(type);
+  }
+
   @Nullable
   public static String getReportTypeName(@NotNull String type) {
     return SUPPORTED_REPORT_TYPES.get(type);
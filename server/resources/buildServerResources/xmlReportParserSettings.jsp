@@ -63,9 +63,15 @@
           if (selectedValue == '') {
           BS.Util.hide('xmlReportParsing.reportDirs.container');
           BS.Util.hide('xmlReportParsing.verboseOutput.container');
+          BS.Util.hide('xmlReportParsing.skipDuplicates.container');
+          BS.Util.hide('xmlReportParsing.reportManifest.container');
+          BS.Util.hide('xmlReportParsing.readyPolicy.container');
           } else {
           BS.Util.show('xmlReportParsing.reportDirs.container');
           BS.Util.show('xmlReportParsing.verboseOutput.container');
+          BS.Util.show('xmlReportParsing.skipDuplicates.container');
+          BS.Util.show('xmlReportParsing.reportManifest.container');
+          BS.Util.show('xmlReportParsing.readyPolicy.container');
           BS.MultilineProperties.show('xmlReportParsing.reportDirs', true);
           $('xmlReportParsing.reportDirs').focus();
           }
@@ -78,6 +84,13 @@
           } else {
           BS.Util.hide('xmlReportParsing.condition.note.container');
           }
+          if (selectedValue == '' || isInspection || selectedValue == 'pmdCpd') {
+          BS.Util.hide('xmlReportParsing.passedTestOutput.limit.container');
+          BS.Util.hide('xmlReportParsing.stackTrace.references.container');
+          } else {
+          BS.Util.show('xmlReportParsing.passedTestOutput.limit.container');
+          BS.Util.show('xmlReportParsing.stackTrace.references.container');
+          }
           if (selectedValue == 'findBugs') {
           BS.Util.show('xmlReportParsing.findBugs.home.container');
           } else {
@@ -135,6 +148,13 @@
                                  linkTitle="Type report monitoring rules" note="${note}"/>
     </td>
 </tr>
+<tr id="xmlReportParsing.reportManifest.container"
+    style="${displayReportsSettings ? '' : 'display: none;'}">
+    <th><label for="xmlReportParsing.reportManifest">Rules point to manifest:</label></th>
+    <td><props:checkboxProperty name="xmlReportParsing.reportManifest"/>
+        <span class="smallNote">Monitoring rules contain a single path to a manifest file listing completed reports, one path per line. Reports are read from the manifest as they are appended instead of scanning directories.</span>
+    </td>
+</tr>
 <tr id="xmlReportParsing.verboseOutput.container"
     style="${displayReportsSettings ? '' : 'display: none;'}">
     <th><label for="xmlReportParsing.verboseOutput">Verbose output:</label></th>
@@ -142,6 +162,34 @@
         <props:checkboxProperty name="xmlReportParsing.verboseOutput"/>
     </td>
 </tr>
+<tr id="xmlReportParsing.skipDuplicates.container"
+    style="${displayReportsSettings ? '' : 'display: none;'}">
+    <th><label for="xmlReportParsing.skipDuplicates">Skip duplicate reports:</label></th>
+    <td><props:checkboxProperty name="xmlReportParsing.skipDuplicates"/>
+        <span class="smallNote">Do not process a report with the same content as an already processed report, e.g. a copy of a report directory.</span>
+    </td>
+</tr>
+<tr id="xmlReportParsing.readyPolicy.container"
+    style="${displayReportsSettings ? '' : 'display: none;'}">
+    <th><label for="xmlReportParsing.readyPolicy">Report ready policy:</label></th>
+    <td><props:textProperty name="xmlReportParsing.readyPolicy" style="width:12em;" maxlength="100"/>
+        <span class="smallNote">When to start parsing a report written during the build step: <strong>marker[:suffix]</strong> waits for a marker file, e.g. report.xml.done, <strong>stableSize[:runs]</strong> waits until the report size stops changing, <strong>lock</strong> waits until the writer releases its lock on the report. Leave blank to parse reports as soon as they change.</span>
+    </td>
+</tr>
+<tr id="xmlReportParsing.passedTestOutput.limit.container"
+    style="${displayReportsSettings and not displayInspectionsSettings and reportType != 'pmdCpd' ? '' : 'display: none;'}">
+    <th><label for="xmlReportParsing.passedTestOutput.limit">Passed test output limit:</label></th>
+    <td><props:textProperty name="xmlReportParsing.passedTestOutput.limit" style="width:6em;" maxlength="12"/>
+        <span class="smallNote">Maximum number of output characters reported for a passed test, 0 to drop the output. Failed and ignored tests always get full output. Leave blank if there is no limit.</span>
+    </td>
+</tr>
+<tr id="xmlReportParsing.stackTrace.references.container"
+    style="${displayReportsSettings and not displayInspectionsSettings and reportType != 'pmdCpd' ? '' : 'display: none;'}">
+    <th><label for="xmlReportParsing.stackTrace.references">Shorten repeated stack traces:</label></th>
+    <td><props:checkboxProperty name="xmlReportParsing.stackTrace.references"/>
+        <span class="smallNote">Report a stack trace repeated by several failed tests only for the first of them, other tests refer to it.</span>
+    </td>
+</tr>
 
 <c:set var="noLimits"
        value="${empty propertiesBean.properties['xmlReportParsing.max.errors'] and empty propertiesBean.properties['xmlReportParsing.max.warnings']}"/>
@@ -167,6 +215,7 @@
         <a href="#"
         onclick="BS.Util.show('xmlReportParsing.max.errors.container');
         BS.Util.show('xmlReportParsing.max.warnings.container');
+        BS.Util.show('xmlReportParsing.max.failFast.container');
         BS.MultilineProperties.updateVisible();
         return false;">following settings</a>
       </c:when>
@@ -192,6 +241,14 @@
     </td>
 </tr>
 
+<tr id="xmlReportParsing.max.failFast.container"
+    style="${noLimits ? 'display: none;' : ''}">
+    <th><label for="xmlReportParsing.max.failFast">Stop at limits:</label></th>
+    <td><props:checkboxProperty name="xmlReportParsing.max.failFast"/>
+        <span class="smallNote">Stop reporting inspections as soon as one of the limits is exceeded. Totals are still counted.</span>
+    </td>
+</tr>
+
 <script type="text/javascript">
   BS.MultilineProperties.setVisible('xmlReportParsing.reportDirs', true);
   BS.MultilineProperties.show('xmlReportParsing.reportDirs', true);
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import jetbrains.buildServer.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ManifestRulesTest {
+  private File myBaseDir;
+  private File myManifest;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myBaseDir = FileUtil.createTempDirectory("manifestRules", "");
+    myManifest = new File(myBaseDir, "reports.txt");
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    FileUtil.delete(myBaseDir);
+  }
+
+  @Test
+  public void testReadsAppendedEntries() throws Exception {
+    final ManifestRules rules = new ManifestRules(myManifest, myBaseDir);
+    assertTrue(rules.collectNewFiles().isEmpty());
+
+    append("a/TEST-1.xml\n# comment\n\n" + new File(myBaseDir, "b/TEST-2.xml").getAbsolutePath() + "\r\n");
+    assertEquals(rules.collectNewFiles(), Arrays.asList(file("a/TEST-1.xml"), file("b/TEST-2.xml")));
+    assertTrue(rules.collectNewFiles().isEmpty());
+
+    append("./c/TEST-3.xml\n");
+    assertEquals(rules.collectNewFiles(), Collections.singletonList(file("c/TEST-3.xml")));
+    assertEquals(rules.collectFiles(), Arrays.asList(file("a/TEST-1.xml"), file("b/TEST-2.xml"), file("c/TEST-3.xml")));
+    assertEquals(rules.getPaths(), Collections.singletonList(myManifest));
+  }
+
+  @Test
+  public void testIncompleteLineReadWhenTerminated() throws Exception {
+    final ManifestRules rules = new ManifestRules(myManifest, myBaseDir);
+
+    append("a/TEST-1.xml\na/TEST-");
+    assertEquals(rules.collectNewFiles(), Collections.singletonList(file("a/TEST-1.xml")));
+
+    append("2.xml");
+    assertTrue(rules.collectNewFiles().isEmpty());
+
+    append("\n");
+    assertEquals(rules.collectNewFiles(), Collections.singletonList(file("a/TEST-2.xml")));
+  }
+
+  @Test
+  public void testUpdatedReportListedAgain() throws Exception {
+    final ManifestRules rules = new ManifestRules(myManifest, myBaseDir);
+
+    append("a/TEST-1.xml\n");
+    rules.collectNewFiles();
+    append("a/TEST-1.xml\n");
+
+    assertEquals(rules.collectNewFiles(), Collections.singletonList(file("a/TEST-1.xml")));
+    assertEquals(rules.collectFiles(), Collections.singletonList(file("a/TEST-1.xml")));
+  }
+
+  @Test
+  public void testRecreatedManifestReadFromStart() throws Exception {
+    final ManifestRules rules = new ManifestRules(myManifest, myBaseDir);
+
+    append("a/TEST-1.xml\na/TEST-2.xml\n");
+    rules.collectNewFiles();
+    FileUtil.delete(myManifest);
+    append("b/TEST-3.xml\n");
+
+    assertEquals(rules.collectNewFiles(), Collections.singletonList(file("b/TEST-3.xml")));
+  }
+
+  private void append(@NotNull String text) throws Exception {
+    Files.write(myManifest.toPath(), text.getBytes("UTF-8"), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  @NotNull
+  private File file(@NotNull String path) {
+    return new File(myBaseDir, path);
+  }
+}
@@ -17,14 +17,25 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.ready.MarkerFileReadyPolicy;
+import jetbrains.buildServer.xmlReportPlugin.ready.ReportReadyPolicy;
+import jetbrains.buildServer.xmlReportPlugin.ready.StableSizeReadyPolicy;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import jetbrains.buildServer.xmlReportPlugin.utils.RetryBackoff;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -42,11 +53,21 @@ public class MonitorRulesCommandTest extends BaseCommandTestCase {
   private RulesState myRulesState;
   private StringBuilder myResult;
   private File myFile;
+  private int mySignatureDepth;
+  private FileSnapshot.Reader myFileReader;
+  private Rules myRules;
+  private ReportReadyPolicy myReadyPolicy;
+  private boolean myReparseUpdated;
 
   @BeforeMethod
   @Override
   public void setUp() throws Exception {
     super.setUp();
+    mySignatureDepth = 0;
+    myFileReader = FileSnapshot.DEFAULT_READER;
+    myRules = null;
+    myReadyPolicy = ReportReadyPolicy.ALWAYS;
+    myReparseUpdated = true;
     myFile = writeFile("folder/file.xml", true);
     myRulesState = new RulesState();
     myResult = new StringBuilder();
@@ -67,7 +88,7 @@ public class MonitorRulesCommandTest extends BaseCommandTestCase {
                                                         @NotNull final StringBuilder result,
                                                         final boolean parseOutOfDate, final long startTime) {
     final List<String> rulesList = Arrays.asList("**/*.xml");
-    final Rules rules = new OptimizingIncludeExcludeRules(myBaseFolder, rulesList);
+    final Rules rules = myRules == null ? new OptimizingIncludeExcludeRules(myBaseFolder, rulesList) : myRules;
     final MonitorRulesCommand.MonitorRulesParameters parameters = new MonitorRulesCommand.MonitorRulesParameters() {
       @NotNull
       public Rules getRules() {
@@ -94,7 +115,16 @@ public class MonitorRulesCommandTest extends BaseCommandTestCase {
 
       @Override
       public boolean isReparseUpdated() {
-        return true;
+        return myReparseUpdated;
+      }
+
+      public int getSignatureDepth() {
+        return mySignatureDepth;
+      }
+
+      @NotNull
+      public ReportReadyPolicy getReadyPolicy() {
+        return myReadyPolicy;
       }
     };
 
@@ -104,7 +134,7 @@ public class MonitorRulesCommandTest extends BaseCommandTestCase {
       }
     };
 
-    return new MonitorRulesCommand(parameters, reportStateHolder, false, listener);
+    return new MonitorRulesCommand(parameters, reportStateHolder, false, listener, myFileReader);
   }
 
   private void assertFileState(@NotNull ReportStateHolder.ReportState state) {
@@ -236,4 +266,249 @@ public class MonitorRulesCommandTest extends BaseCommandTestCase {
     assertFileNotDetected();
     assertFileState(ReportStateHolder.ReportState.ERROR);
   }
+
+  @Test
+  public void testFileNotDetectedWhenRewrittenWithSameContent() throws Exception {
+    mySignatureDepth = 4;
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, EMPTY_RESULT);
+    writeFile(myFile, true);
+    myResult.delete(0, myResult.length());
+    command.run();
+
+    assertFileNotDetected();
+    assertFileState(ReportStateHolder.ReportState.PROCESSED);
+    assertEquals(myRulesState.getLastModified(myFile), Long.valueOf(Files.getLastModifiedTime(myFile.toPath()).toMillis()));
+  }
+
+  @Test
+  public void testFileDetectedWhenContentOfSameLengthChanged() throws Exception {
+    mySignatureDepth = 4;
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, EMPTY_RESULT);
+    Thread.sleep(1000L); // to make sure time in seconds changes
+    FileUtil.writeFileAndReportErrors(myFile, "some dat@");
+    myResult.delete(0, myResult.length());
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
+
+  @Test
+  public void testFileAttributesReadOncePerRun() throws Exception {
+    final AtomicInteger reads = new AtomicInteger();
+    final AtomicInteger readabilityChecks = new AtomicInteger();
+    myFileReader = new FileSnapshot.Reader() {
+      @Nullable
+      public FileSnapshot read(@NotNull File file) {
+        reads.incrementAndGet();
+        return FileSnapshot.DEFAULT_READER.read(file);
+      }
+
+      public boolean canRead(@NotNull File file) {
+        readabilityChecks.incrementAndGet();
+        return FileSnapshot.DEFAULT_READER.canRead(file);
+      }
+    };
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileDetected();
+    assertEquals(reads.get(), 1);
+    assertEquals(readabilityChecks.get(), 1);
+
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, EMPTY_RESULT);
+    command.run();
+    command.run();
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.ERROR, EMPTY_RESULT);
+    command.run();
+
+    assertFileState(ReportStateHolder.ReportState.ERROR);
+    assertEquals(reads.get(), 4);
+    assertEquals(readabilityChecks.get(), 1);
+  }
+
+  @Test
+  public void testOnlyNewManifestEntriesChecked() throws Exception {
+    myReparseUpdated = false;
+    final AtomicInteger reads = new AtomicInteger();
+    myFileReader = new FileSnapshot.Reader() {
+      @Nullable
+      public FileSnapshot read(@NotNull File file) {
+        reads.incrementAndGet();
+        return FileSnapshot.DEFAULT_READER.read(file);
+      }
+
+      public boolean canRead(@NotNull File file) {
+        return FileSnapshot.DEFAULT_READER.canRead(file);
+      }
+    };
+    final File manifest = new File(myBaseFolder, "reports.txt");
+    myRules = new ManifestRules(manifest, myBaseFolder);
+    FileUtil.writeFileAndReportErrors(manifest, "");
+    FileUtil.writeFileAndReportErrors(new File(myBaseFolder, "folder/empty.xml"), "");
+
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileNotDetected();
+    assertEquals(reads.get(), 0);
+
+    Files.write(manifest.toPath(), "folder/file.xml\nfolder/empty.xml\n".getBytes("UTF-8"), StandardOpenOption.APPEND);
+    command.run();
+
+    assertFileDetected();
+    assertEquals(reads.get(), 2);
+
+    // the empty report is checked until it gets content, the report is checked until it's processed
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, EMPTY_RESULT);
+    command.run();
+    command.run();
+    assertEquals(reads.get(), 5);
+
+    // processed reports are not checked again as updated reports are not parsed again
+    writeFile(myFile, true);
+    myResult.delete(0, myResult.length());
+    command.run();
+
+    assertFileNotDetected();
+    assertEquals(reads.get(), 6);
+  }
+
+  @Test
+  public void testFailedManifestEntryCheckedAgain() throws Exception {
+    myReparseUpdated = false;
+    final File manifest = new File(myBaseFolder, "reports.txt");
+    myRules = new ManifestRules(manifest, myBaseFolder);
+    FileUtil.writeFileAndReportErrors(manifest, "folder/file.xml\n");
+
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+    assertFileDetected();
+
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.ERROR, EMPTY_RESULT);
+    command.run();
+    writeFile(myFile, true);
+    myResult.delete(0, myResult.length());
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
+
+  @Test
+  public void testUpdatedManifestEntryCheckedAgainWhenReparsing() throws Exception {
+    final File manifest = new File(myBaseFolder, "reports.txt");
+    myRules = new ManifestRules(manifest, myBaseFolder);
+    FileUtil.writeFileAndReportErrors(manifest, "folder/file.xml\n");
+
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+    assertFileDetected();
+
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.PROCESSED, EMPTY_RESULT);
+    command.run();
+    writeFile(myFile, true);
+    myResult.delete(0, myResult.length());
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
+
+  @Test
+  public void testFileNotDetectedUntilMarkerCreated() throws Exception {
+    myReadyPolicy = new MarkerFileReadyPolicy(".done");
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileNotDetected();
+    assertFileState(ReportStateHolder.ReportState.UNKNOWN);
+
+    writeFile("folder/file.xml.done", false);
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
+
+  @Test
+  public void testFileNotDetectedWhileGrowing() throws Exception {
+    myReadyPolicy = new StableSizeReadyPolicy(1);
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileNotDetected();
+
+    FileUtil.writeFileAndReportErrors(myFile, "some more data");
+    command.run();
+
+    assertFileNotDetected();
+
+    command.run();
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
+
+  @Test
+  public void testReadyPolicyIgnoredWhenWritersFinished() throws Exception {
+    myReadyPolicy = new MarkerFileReadyPolicy(".done");
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run(true);
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
+
+  @Test
+  public void testFailedFileNotDetectedUntilRetryDue() throws Exception {
+    myRulesState = new RulesState(false, new RetryBackoff(60 * 60 * 1000, 60 * 60 * 1000));
+    final MonitorRulesCommand command = createMonitorRulesCommand();
+    command.run();
+
+    assertFileDetected();
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.ERROR, EMPTY_RESULT);
+    writeFile(myFile, true);
+    myResult.delete(0, myResult.length());
+    command.run();
+
+    assertFileNotDetected();
+    assertFileState(ReportStateHolder.ReportState.ERROR);
+    assertEquals(myRulesState.getRetriesAvoided(), 1);
+
+    // counted once per retry delay, not on every run
+    command.run();
+    command.run();
+    assertEquals(myRulesState.getRetriesAvoided(), 1);
+
+    command.run(true);
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+
+    // the next failure starts a new retry delay
+    myRulesState.setReportState(myFile, ReportStateHolder.ReportState.ERROR, EMPTY_RESULT);
+    writeFile(myFile, true);
+    myResult.delete(0, myResult.length());
+    command.run();
+    command.run();
+    assertEquals(myRulesState.getRetriesAvoided(), 2);
+
+    command.run(true);
+
+    assertFileDetected();
+    assertFileState(ReportStateHolder.ReportState.ON_PROCESSING);
+  }
 }
@@ -334,7 +334,7 @@ public class OptimizingIncludeExcludeRulesTest extends BaseTestCase {
   }
 
   @NotNull
-  private Rules createRules(@NotNull final File baseDir, @NotNull final List<String> rules) {
+  protected Rules createRules(@NotNull final File baseDir, @NotNull final List<String> rules) {
     return new OptimizingIncludeExcludeRules(baseDir, rules);
   }
 }
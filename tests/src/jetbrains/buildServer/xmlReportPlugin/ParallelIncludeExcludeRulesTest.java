@@ -0,0 +1,43 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+/**
+ * Runs include/exclude rules tests against the parallel directory walker
+ */
+@Test
+public class ParallelIncludeExcludeRulesTest extends OptimizingIncludeExcludeRulesTest {
+  private final ForkJoinPool myPool = new ForkJoinPool(4);
+
+  @AfterClass
+  public void shutdownPool() {
+    myPool.shutdownNow();
+  }
+
+  @NotNull
+  @Override
+  protected Rules createRules(@NotNull final File baseDir, @NotNull final List<String> rules) {
+    return new OptimizingIncludeExcludeRules(baseDir, rules, myPool);
+  }
+}
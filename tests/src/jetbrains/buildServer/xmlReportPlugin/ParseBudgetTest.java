@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.io.File;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.ParserUtils;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ParseBudgetTest {
+  @Test
+  public void testUnlimited() throws Exception {
+    assertFalse(ParseBudget.UNLIMITED.isLimited());
+    final ParseBudget.Timer timer = ParseBudget.UNLIMITED.start();
+    Thread.sleep(10);
+    timer.checkpoint();
+    timer.stop();
+    assertFalse(timer.isTimedOut());
+  }
+
+  @Test
+  public void testReportLimit() throws Exception {
+    final ParseBudget budget = new ParseBudget(10, 0);
+    assertTrue(budget.isLimited());
+    final ParseBudget.Timer timer = budget.start();
+    Thread.sleep(20);
+    try {
+      timer.checkpoint();
+      fail("Timeout expected");
+    } catch (ParseTimeoutException e) {
+      assertEquals(e.getMessage(), "Parsing time limit of 10 ms per report exceeded");
+    }
+    assertTrue(timer.isTimedOut());
+    timer.stop();
+
+    // next report gets its own limit
+    budget.start().checkpoint();
+  }
+
+  @Test
+  public void testBuildLimit() throws Exception {
+    final ParseBudget budget = new ParseBudget(60000, 2000);
+    final ParseBudget.Timer first = budget.start();
+    first.checkpoint();
+    Thread.sleep(2010);
+    first.stop();
+    assertTrue(budget.getSpentMs() >= 2000);
+
+    try {
+      budget.start().checkpoint();
+      fail("Timeout expected");
+    } catch (ParseTimeoutException e) {
+      assertEquals(e.getMessage(), "Parsing time limit of 2 s per build exceeded");
+    }
+  }
+
+  @Test
+  public void testCheckpointCurrent() throws Exception {
+    ParseBudget.checkpointCurrent();
+
+    final ParseBudget.Timer timer = new ParseBudget(10, 0).start();
+    timer.bindToCurrentThread();
+    Thread.sleep(20);
+    try {
+      ParseBudget.checkpointCurrent();
+      fail("Timeout expected");
+    } catch (ParseTimeoutException e) {
+      assertEquals(e.getMessage(), "Parsing time limit of 10 ms per report exceeded");
+    } finally {
+      timer.stop();
+    }
+
+    // stopped timer is not checked any more
+    ParseBudget.checkpointCurrent();
+  }
+
+  @Test
+  public void testReportCompletenessCheckInterrupted() throws Exception {
+    final File report = FileUtil.createTempFile("report", ".xml");
+    try {
+      FileUtil.writeFileAndReportErrors(report, "<checkstyle><file name=\"a\"/></checkstyle>");
+      assertTrue(ParserUtils.isReportComplete(report, "checkstyle"));
+
+      final ParseBudget.Timer timer = new ParseBudget(10, 0).start();
+      timer.bindToCurrentThread();
+      Thread.sleep(20);
+      try {
+        ParserUtils.isReportComplete(report, "checkstyle");
+        fail("Timeout expected");
+      } catch (ParseTimeoutException e) {
+        assertTrue(timer.isTimedOut());
+      } finally {
+        timer.stop();
+      }
+    } finally {
+      FileUtil.delete(report);
+    }
+  }
+}
@@ -17,10 +17,21 @@
 package jetbrains.buildServer.xmlReportPlugin;
 
 import java.io.File;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.agent.FlowLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.cache.ParseStatistics;
+import jetbrains.buildServer.xmlReportPlugin.cache.ReportCache;
 import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
 import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit.AntJUnitFactory;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -42,6 +53,8 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
   private StringBuilder myResult;
   private BuildProgressLogger myLogger;
   private ParseParameters myParseParameters;
+  private ParseBudget myParseBudget;
+  private Map<String, String> myParameters;
 
   @BeforeMethod
   @Override
@@ -51,6 +64,8 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
     myRulesState = new RulesState();
     myResult = new StringBuilder();
     myLogger = new BuildLoggerForTesting(myResult);
+    myParseBudget = ParseBudget.UNLIMITED;
+    myParameters = new HashMap<String, String>();
     myParseParameters = createParseParameters();
   }
 
@@ -169,6 +184,448 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
     assertFileState(ReportStateHolder.ReportState.ERROR);
   }
 
+  @Test
+  public void testDuplicateSkipped() throws Exception {
+    myRulesState = new RulesState(true);
+    final File copy = writeFile("copy.xml", false);
+
+    createParseReportCommand(createParser(true, false)).run();
+    new ParseReportCommand(copy, myParseParameters, myRulesState, createParserFactory(createParser(true, false))).run();
+
+    assertContains(myResult, "PARSING: ##BASE_DIR##/file.xml PREVIOUS RESULT: null");
+    assertNotContains(myResult, "PARSING: ##BASE_DIR##/copy.xml PREVIOUS RESULT: null");
+
+    assertFileState(ReportStateHolder.ReportState.PROCESSED);
+    assertTrue(myRulesState.getReportState(copy) == ReportStateHolder.ReportState.DUPLICATE);
+    assertEquals(myRulesState.getDuplicateFiles().get(copy), myFile);
+  }
+
+  @Test
+  public void testDuplicateComparedWithCompletedReport() throws Exception {
+    myRulesState = new RulesState(true);
+    final File partialCopy = writeFile("partialCopy.xml", false);
+
+    // the report is incomplete on the first attempt
+    createParseReportCommand(createParser(false, false)).run();
+    FileUtil.writeFileAndReportErrors(myFile, "some data and the rest");
+    createParseReportCommand(createParser(true, false)).run();
+    assertFileState(ReportStateHolder.ReportState.PROCESSED);
+
+    final File completeCopy = new File(myFile.getParentFile(), "completeCopy.xml");
+    FileUtil.writeFileAndReportErrors(completeCopy, "some data and the rest");
+    new ParseReportCommand(partialCopy, myParseParameters, myRulesState, createParserFactory(createParser(true, false))).run();
+    new ParseReportCommand(completeCopy, myParseParameters, myRulesState, createParserFactory(createParser(true, false))).run();
+
+    assertTrue(myRulesState.getReportState(partialCopy) == ReportStateHolder.ReportState.PROCESSED);
+    assertTrue(myRulesState.getReportState(completeCopy) == ReportStateHolder.ReportState.DUPLICATE);
+    assertEquals(myRulesState.getDuplicateFiles().get(completeCopy), myFile);
+  }
+
+  @Test
+  public void testDuplicatesNotDetectedByDefault() throws Exception {
+    final File copy = writeFile("copy.xml", false);
+
+    createParseReportCommand(createParser(true, false)).run();
+    new ParseReportCommand(copy, myParseParameters, myRulesState, createParserFactory(createParser(true, false))).run();
+
+    assertContains(myResult, "PARSING: ##BASE_DIR##/file.xml PREVIOUS RESULT: null",
+                   "PARSING: ##BASE_DIR##/copy.xml PREVIOUS RESULT: null");
+    assertTrue(myRulesState.getDuplicateFiles().isEmpty());
+  }
+
+  @Test
+  public void testParsedInOwnFlow() throws Exception {
+    final FlowLogger flowLogger = new BuildLoggerForTesting(myResult) {
+      @Override
+      public void startFlow() {
+        myResult.append("FLOW STARTED\n");
+      }
+
+      @Override
+      public void disposeFlow() {
+        myResult.append("FLOW DISPOSED\n");
+      }
+    };
+    final ParseReportCommand parseReportCommand =
+      new ParseReportCommand(myFile, myParseParameters, myRulesState, createParserFactory(createParser(true, true)), flowLogger);
+    parseReportCommand.run();
+
+    assertContains(myResult, "PARSING: ##BASE_DIR##/file.xml PREVIOUS RESULT: null",
+                   "PROCESSING RESULT: FILE: ##BASE_DIR##/file.xml RESULT: EMPTY_RESULT");
+    assertTrue(myResult.toString().startsWith("FLOW STARTED\n"), myResult.toString());
+    assertTrue(myResult.toString().endsWith("FLOW DISPOSED\n"), myResult.toString());
+
+    assertFileState(ReportStateHolder.ReportState.ERROR);
+  }
+
+  @Test
+  public void testTimedOut() throws Exception {
+    myParseBudget = new ParseBudget(100, 0);
+    myParseParameters = new DelegatingParseParameters(createParseParameters()) {
+      @Override
+      public boolean isVerbose() {
+        return false;
+      }
+
+      @NotNull
+      @Override
+      public TestReporter getTestReporter() {
+        return TestUtil.createTestResultsWriter(myResult);
+      }
+    };
+    final ParserFactory parserFactory = new ParserFactory() {
+      @NotNull
+      public String getType() {
+        return "TYPE";
+      }
+
+      @NotNull
+      public ParsingStage getParsingStage() {
+        return ParsingStage.RUNTIME;
+      }
+
+      @NotNull
+      public Parser createParser(@NotNull final ParseParameters parameters) {
+        return new Parser() {
+          private int myTests;
+
+          public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) throws ParsingException {
+            final TestReporter reporter = parameters.getTestReporter();
+            reporter.openTestSuite("suite");
+            while (true) {
+              reporter.openTest("test" + myTests);
+              try {
+                Thread.sleep(20);
+              } catch (InterruptedException e) {
+                throw new ParsingException(e);
+              }
+              reporter.closeTest(20);
+              ++myTests;
+            }
+          }
+
+          public ParsingResult getParsingResult() {
+            return new TestParsingResult(1, myTests);
+          }
+        };
+      }
+
+      @NotNull
+      public ParsingResult createEmptyResult() {
+        return new TestParsingResult(0, 0);
+      }
+    };
+    new ParseReportCommand(myFile, myParseParameters, myRulesState, parserFactory).run();
+
+    assertFileState(ReportStateHolder.ReportState.ERROR);
+    final ParsingResult result = myRulesState.getParsingResult(myFile);
+    assertNotNull(result);
+    assertTrue(result.getProblem().getCause() instanceof ParseTimeoutException, String.valueOf(result.getProblem()));
+    assertTrue(((TestParsingResult)result).getTests() > 0);
+    // the test running at the deadline is reported in full
+    assertFalse(myResult.toString().contains("EndTest:0"), myResult.toString());
+    // the suite left open by the interrupted parser is closed
+    assertTrue(myResult.toString().endsWith("------------------------\nEndSuite\n"), myResult.toString());
+  }
+
+  @Test
+  public void testTimedOutWithoutEvents() throws Exception {
+    myParseBudget = new ParseBudget(100, 0);
+    final ParserFactory parserFactory = new ParserFactory() {
+      @NotNull
+      public String getType() {
+        return "TYPE";
+      }
+
+      @NotNull
+      public ParsingStage getParsingStage() {
+        return ParsingStage.RUNTIME;
+      }
+
+      @NotNull
+      public Parser createParser(@NotNull final ParseParameters parameters) {
+        return new Parser() {
+          public boolean parse(@NotNull File file, @Nullable ParsingResult prevResult) throws ParsingException {
+            // skips elements which are not reported
+            while (true) {
+              ParseBudget.checkpointCurrent();
+              try {
+                Thread.sleep(20);
+              } catch (InterruptedException e) {
+                throw new ParsingException(e);
+              }
+            }
+          }
+
+          public ParsingResult getParsingResult() {
+            return new TestParsingResult(0, 0);
+          }
+        };
+      }
+
+      @NotNull
+      public ParsingResult createEmptyResult() {
+        return new TestParsingResult(0, 0);
+      }
+    };
+    myParseParameters = new DelegatingParseParameters(createParseParameters()) {
+      @Override
+      public boolean isVerbose() {
+        return false;
+      }
+    };
+    new ParseReportCommand(myFile, myParseParameters, myRulesState, parserFactory).run();
+
+    assertFileState(ReportStateHolder.ReportState.ERROR);
+    final ParsingResult result = myRulesState.getParsingResult(myFile);
+    assertNotNull(result);
+    assertTrue(result.getProblem().getCause() instanceof ParseTimeoutException, String.valueOf(result.getProblem()));
+    // the timer is not checked after the parse
+    ParseBudget.checkpointCurrent();
+  }
+
+  @Test
+  public void testConcurrentParsingKeepsSuiteNesting() throws Exception {
+    final File report = TestUtil.getTestDataFile("nineCases.xml", "junit");
+    final List<String> sharedLog = Collections.synchronizedList(new ArrayList<String>());
+
+    parseInFlow(report, "expected", sharedLog);
+    final List<String> expected = getFlowMessages(sharedLog, "expected");
+    assertEquals(expected.get(0), "FLOW STARTED");
+    assertEquals(expected.get(expected.size() - 1), "FLOW DISPOSED");
+    assertTrue(expected.contains("SUITE STARTED: TestCase"), expected.toString());
+    sharedLog.clear();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> results = new ArrayList<Future<?>>();
+      for (int i = 0; i < 64; ++i) {
+        final String flowId = "flow-" + i;
+        results.add(executor.submit(new Callable<Object>() {
+          public Object call() throws Exception {
+            parseInFlow(report, flowId, sharedLog);
+            return null;
+          }
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < 64; ++i) {
+      assertEquals(getFlowMessages(sharedLog, "flow-" + i), expected);
+    }
+    assertEquals(sharedLog.size(), 64 * expected.size());
+  }
+
+  private void parseInFlow(@NotNull File report, @NotNull String flowId, @NotNull List<String> sharedLog) {
+    final SharedLogFlowLogger flowLogger = new SharedLogFlowLogger(flowId, sharedLog);
+    final ParseParameters parameters = new DelegatingParseParameters(createParseParameters()) {
+      @Override
+      public boolean isVerbose() {
+        return false;
+      }
+
+      @NotNull
+      @Override
+      public BuildProgressLogger getThreadLogger() {
+        return flowLogger;
+      }
+
+      @NotNull
+      @Override
+      public TestReporter getTestReporter() {
+        return createLoggerTestReporter(flowLogger);
+      }
+    };
+    new ParseReportCommand(report, parameters, new RulesState(), new AntJUnitFactory(), flowLogger).run();
+  }
+
+  @NotNull
+  private static List<String> getFlowMessages(@NotNull List<String> sharedLog, @NotNull String flowId) {
+    final String prefix = "[" + flowId + "] ";
+    final List<String> messages = new ArrayList<String>();
+    synchronized (sharedLog) {
+      for (String line : sharedLog) {
+        if (line.startsWith(prefix)) messages.add(line.substring(prefix.length()));
+      }
+    }
+    return messages;
+  }
+
+  /**
+   * Test reporter which logs into the build logger API, like the reporter used by the plugin
+   */
+  @NotNull
+  private static TestReporter createLoggerTestReporter(@NotNull final BuildProgressLogger logger) {
+    return new TestReporter() {
+      private final Deque<String> mySuites = new ArrayDeque<String>();
+      private final Deque<String> myTests = new ArrayDeque<String>();
+
+      public void openTestSuite(@NotNull String name) {
+        mySuites.push(name);
+        logger.logSuiteStarted(name);
+      }
+
+      public void openTest(@NotNull String name) {
+        myTests.push(name);
+        logger.logTestStarted(name);
+      }
+
+      public void testStdOutput(@NotNull String text) {
+        logger.logTestStdOut(myTests.peek(), text);
+      }
+
+      public void testErrOutput(@NotNull String text) {
+        logger.logTestStdErr(myTests.peek(), text);
+      }
+
+      public void testFail(@Nullable String error, @Nullable String stacktrace) {
+        logger.logTestFailed(myTests.peek(), error, stacktrace);
+      }
+
+      public void testIgnored(@NotNull String message) {
+        logger.logTestIgnored(myTests.peek(), message);
+      }
+
+      public void closeTest(long duration) {
+        logger.logTestFinished(myTests.pop());
+      }
+
+      public void closeTestSuite() {
+        logger.logSuiteFinished(mySuites.pop());
+      }
+
+      public void info(@NotNull String message) {
+        logger.message(message);
+      }
+
+      public void warning(@NotNull String message) {
+        logger.warning(message);
+      }
+
+      public void error(@NotNull String message) {
+        logger.error(message);
+      }
+
+      public void failure(@NotNull String message) {
+        logger.error(message);
+      }
+    };
+  }
+
+  /**
+   * Flow of a logger shared by concurrent parsing commands, each message line is tagged with the flow id
+   */
+  private static class SharedLogFlowLogger extends BuildLoggerForTesting {
+    @NotNull
+    private final String myFlowId;
+    @NotNull
+    private final List<String> mySharedLog;
+
+    SharedLogFlowLogger(@NotNull String flowId, @NotNull List<String> sharedLog) {
+      super(new StringBuilder());
+      myFlowId = flowId;
+      mySharedLog = sharedLog;
+    }
+
+    @Override
+    public String getFlowId() {
+      return myFlowId;
+    }
+
+    @Override
+    public void startFlow() {
+      getText().append("FLOW STARTED\n");
+      publish();
+    }
+
+    @Override
+    public void disposeFlow() {
+      getText().append("FLOW DISPOSED\n");
+      publish();
+    }
+
+    @Override
+    public void logSuiteStarted(String name) {
+      super.logSuiteStarted(name);
+      publish();
+    }
+
+    @Override
+    public void logSuiteFinished(String name) {
+      super.logSuiteFinished(name);
+      publish();
+    }
+
+    @Override
+    public void logTestStarted(String name) {
+      super.logTestStarted(name);
+      publish();
+    }
+
+    @Override
+    public void logTestFinished(String name) {
+      super.logTestFinished(name);
+      publish();
+    }
+
+    @Override
+    public void logTestFailed(String testName, String message, String stackTrace) {
+      super.logTestFailed(testName, message, stackTrace);
+      publish();
+    }
+
+    @Override
+    public void logTestIgnored(String name, String reason) {
+      super.logTestIgnored(name, reason);
+      publish();
+    }
+
+    @Override
+    public void logTestStdOut(String testName, String out) {
+      super.logTestStdOut(testName, out);
+      publish();
+    }
+
+    @Override
+    public void logTestStdErr(String testName, String out) {
+      super.logTestStdErr(testName, out);
+      publish();
+    }
+
+    @Override
+    public void message(String message) {
+      super.message(message);
+      publish();
+    }
+
+    @Override
+    public void warning(@NotNull String message) {
+      super.warning(message);
+      publish();
+    }
+
+    @Override
+    public void error(@NotNull String message) {
+      super.error(message);
+      publish();
+    }
+
+    private void publish() {
+      final String[] lines = getText().toString().split("\n");
+      getText().setLength(0);
+      synchronized (mySharedLog) {
+        for (String line : lines) {
+          mySharedLog.add("[" + myFlowId + "] " + line);
+        }
+      }
+    }
+  }
+
   @NotNull
   private ParseParameters createParseParameters() {
     return new
@@ -187,11 +644,31 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
           throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
         }
 
+        @NotNull
+        public InspectionLimits getInspectionLimits() {
+          throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+        }
+
         @NotNull
         public TestReporter getTestReporter() {
           throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
         }
 
+        @Nullable
+        public ReportCache getReportCache() {
+          return null;
+        }
+
+        @Nullable
+        public ParseStatistics getParseStatistics() {
+          return null;
+        }
+
+        @NotNull
+        public ParseBudget getParseBudget() {
+          return myParseBudget;
+        }
+
         @NotNull
         public DuplicationReporter getDuplicationReporter() {
           throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
@@ -199,7 +676,7 @@ public class ParseReportCommandTest extends BaseCommandTestCase {
 
         @NotNull
         public Map<String, String> getParameters() {
-          throw new IllegalStateException(UNEXPECTED_CALL_MESSAGE);
+          return myParameters;
         }
 
         @NotNull
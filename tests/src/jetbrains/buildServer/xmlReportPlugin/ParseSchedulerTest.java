@@ -0,0 +1,155 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ParseSchedulerTest {
+  private ExecutorService myExecutor;
+  private List<String> myOrder;
+
+  @BeforeMethod
+  public void setUp() {
+    myExecutor = Executors.newFixedThreadPool(2);
+    myOrder = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @NotNull
+  private Runnable record(@NotNull final String name) {
+    return new Runnable() {
+      public void run() {
+        myOrder.add(name);
+      }
+    };
+  }
+
+  @NotNull
+  private Runnable await(@NotNull final CountDownLatch latch) {
+    return new Runnable() {
+      public void run() {
+        try {
+          latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+  }
+
+  private static void waitFor(@NotNull Future<?>... futures) throws Exception {
+    for (Future<?> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testOwnersServedInTurns() throws Exception {
+    final ParseScheduler scheduler = new ParseScheduler(myExecutor, 1, ParseScheduler.Order.SUBMISSION, 0, 0);
+    final CountDownLatch gate = new CountDownLatch(1);
+    scheduler.submit("gate", 0, await(gate));
+
+    final Future<?> a1 = scheduler.submit("a", 10, record("a1"));
+    final Future<?> a2 = scheduler.submit("a", 10, record("a2"));
+    final Future<?> a3 = scheduler.submit("a", 10, record("a3"));
+    final Future<?> b1 = scheduler.submit("b", 10, record("b1"));
+    assertEquals(scheduler.getQueuedCount(), 4);
+
+    gate.countDown();
+    waitFor(a1, a2, a3, b1);
+
+    assertEquals(myOrder, Arrays.asList("a1", "b1", "a2", "a3"));
+    assertEquals(scheduler.getQueuedCount(), 0);
+  }
+
+  @Test
+  public void testSmallestFirst() throws Exception {
+    final ParseScheduler scheduler = new ParseScheduler(myExecutor, 1, ParseScheduler.Order.SMALLEST_FIRST, 0, 0);
+    final CountDownLatch gate = new CountDownLatch(1);
+    scheduler.submit("gate", 0, await(gate));
+
+    final Future<?> large = scheduler.submit("a", 1000, record("large"));
+    final Future<?> medium = scheduler.submit("a", 100, record("medium"));
+    final Future<?> small = scheduler.submit("a", 10, record("small"));
+
+    gate.countDown();
+    waitFor(large, medium, small);
+
+    assertEquals(myOrder, Arrays.asList("small", "medium", "large"));
+  }
+
+  @Test
+  public void testCostliestFirstAcrossOwners() throws Exception {
+    final ParseScheduler scheduler = new ParseScheduler(myExecutor, 1, ParseScheduler.Order.COSTLIEST_FIRST, 0, 0);
+    final CountDownLatch gate = new CountDownLatch(1);
+    scheduler.submit("gate", 0, await(gate));
+
+    final Future<?> a1 = scheduler.submit("a", 10, 5, record("a1"));
+    final Future<?> a2 = scheduler.submit("a", 10, 50, record("a2"));
+    final Future<?> b1 = scheduler.submit("b", 1000, 20, record("b1"));
+    final Future<?> b2 = scheduler.submit("b", 10, 20, record("b2"));
+
+    gate.countDown();
+    waitFor(a1, a2, b1, b2);
+
+    assertEquals(myOrder, Arrays.asList("a2", "b1", "b2", "a1"));
+  }
+
+  @Test
+  public void testLargeReportsLimited() throws Exception {
+    final ParseScheduler scheduler = new ParseScheduler(myExecutor, 2, ParseScheduler.Order.SUBMISSION, 100, 1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    final Future<?> firstLarge = scheduler.submit("a", 1000, await(gate));
+    final Future<?> secondLarge = scheduler.submit("b", 1000, record("large"));
+    final Future<?> small = scheduler.submit("c", 10, record("small"));
+
+    // the second thread is free, but only the small report may use it
+    waitFor(small);
+    assertFalse(secondLarge.isDone());
+    assertEquals(scheduler.getQueuedCount(), 1);
+
+    gate.countDown();
+    waitFor(firstLarge, secondLarge);
+    assertEquals(myOrder, Arrays.asList("small", "large"));
+  }
+
+  @Test(expectedExceptions = java.util.concurrent.CancellationException.class)
+  public void testRejectedTaskCancelled() throws Exception {
+    myExecutor.shutdown();
+    final ParseScheduler scheduler = new ParseScheduler(myExecutor, 1, ParseScheduler.Order.SUBMISSION, 0, 0);
+    scheduler.submit("a", 0, record("a")).get(10, TimeUnit.SECONDS);
+  }
+}
@@ -79,6 +79,9 @@ public final class TestUtil {
         results.append(inspectionType.toString()).append("\n");
       }
 
+      public void markBuildAsInspectionsBuild() {
+      }
+
       public void info(@NotNull final String message) {
         results.append("MESSAGE: ").append(message).append("\n");
       }
@@ -133,6 +133,49 @@ public class XmlReportDataProcessorTest {
     runTest(arguments, "warningsLimit");
   }
 
+  @Test
+  public void testFailFast() throws Exception {
+    final Map<String, String> arguments = new HashMap<String, String>();
+    arguments.put(XmlReportDataProcessor.ERRORS_LIMIT_ARGUMENT, "10");
+    arguments.put(XmlReportDataProcessor.FAIL_FAST_ARGUMENT, "true");
+    runTest(arguments, "failFast");
+  }
+
+  @Test
+  public void testPassedTestOutputLimit() throws Exception {
+    final Map<String, String> arguments = new HashMap<String, String>();
+    arguments.put(XmlReportDataProcessor.PASSED_TEST_OUTPUT_LIMIT_ARGUMENT, "1000");
+    runTest(arguments, "passedTestOutputLimit");
+  }
+
+  @Test
+  public void testStackTraceReferences() throws Exception {
+    final Map<String, String> arguments = new HashMap<String, String>();
+    arguments.put(XmlReportDataProcessor.STACK_TRACE_REFERENCES_ARGUMENT, "true");
+    runTest(arguments, "stackTraceReferences");
+  }
+
+  @Test
+  public void testSkipDuplicates() throws Exception {
+    final Map<String, String> arguments = new HashMap<String, String>();
+    arguments.put(XmlReportDataProcessor.SKIP_DUPLICATES_ARGUMENT, "true");
+    runTest(arguments, "skipDuplicates");
+  }
+
+  @Test
+  public void testManifest() throws Exception {
+    final Map<String, String> arguments = new HashMap<String, String>();
+    arguments.put(XmlReportDataProcessor.MANIFEST_ARGUMENT, "true");
+    runTest(arguments, "manifest");
+  }
+
+  @Test
+  public void testReadyPolicy() throws Exception {
+    final Map<String, String> arguments = new HashMap<String, String>();
+    arguments.put(XmlReportDataProcessor.READY_POLICY_ARGUMENT, "stableSize:3");
+    runTest(arguments, "readyPolicy");
+  }
+
   @Test
   public void testWhenNoDataPublished() throws Exception {
     final Map<String, String> arguments = new HashMap<String, String>();
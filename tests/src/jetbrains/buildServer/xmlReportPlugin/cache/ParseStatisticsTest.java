@@ -0,0 +1,89 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.File;
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ParseStatisticsTest {
+  private File myDir;
+  private File myCheckoutDir;
+  private File myFile;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myDir = FileUtil.createTempDirectory("parseStatistics", "");
+    myCheckoutDir = new File(myDir, "checkout");
+    myFile = new File(myDir, "statistics/build.stats");
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void testSizeIsCostWithoutHistory() {
+    final ParseStatistics statistics = ParseStatistics.load(myFile, myCheckoutDir);
+    assertEquals(statistics.getHistorySize(), 0);
+    assertEquals(statistics.predictCost(new File(myCheckoutDir, "TEST-a.xml"), 1000), 1000);
+  }
+
+  @Test
+  public void testPredictsFromPreviousBuild() {
+    final ParseStatistics previous = new ParseStatistics(myCheckoutDir);
+    // a slow report and a fast one of the same size
+    previous.record(new File(myCheckoutDir, "reports/TEST-slow.xml"), 1000, 90000, 10);
+    previous.record(new File(myCheckoutDir, "reports/TEST-fast.xml"), 1000, 10000, 10);
+    previous.save(myFile);
+
+    // the checkout directory may move between builds
+    final File checkoutDir = new File(myDir, "checkout2");
+    final ParseStatistics statistics = ParseStatistics.load(myFile, checkoutDir);
+    assertEquals(statistics.getHistorySize(), 2);
+
+    assertEquals(statistics.predictCost(new File(checkoutDir, "reports/TEST-slow.xml"), 2000), 180000);
+    assertEquals(statistics.predictCost(new File(checkoutDir, "reports/TEST-fast.xml"), 1000), 10000);
+    // unknown reports are estimated with the average throughput
+    assertEquals(statistics.predictCost(new File(checkoutDir, "reports/TEST-new.xml"), 1000), 50000);
+  }
+
+  @Test
+  public void testHistoryKeptWhenNothingParsed() {
+    final ParseStatistics previous = new ParseStatistics(myCheckoutDir);
+    previous.record(new File(myCheckoutDir, "TEST-a.xml"), 1000, 5000, 1);
+    previous.save(myFile);
+
+    ParseStatistics.load(myFile, myCheckoutDir).save(myFile);
+
+    assertEquals(ParseStatistics.load(myFile, myCheckoutDir).getHistorySize(), 1);
+  }
+
+  @Test
+  public void testMalformedLinesSkipped() throws Exception {
+    assertTrue(myFile.getParentFile().mkdirs());
+    FileUtil.writeFileAndReportErrors(myFile, "1000\t5000\t1\tTEST-a.xml\nbroken\nx\t1\t1\tTEST-b.xml\n");
+
+    assertEquals(ParseStatistics.load(myFile, myCheckoutDir).getHistorySize(), 1);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.*;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.parsers.checkstyle.CheckstyleFactory;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class PreParsedReportsTest {
+  private File myReportDir;
+  private Map<String, String> myParameters;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myReportDir = FileUtil.createTempDirectory("preParsedReports", "");
+    myParameters = new HashMap<String, String>();
+    myParameters.put(XmlReportPluginConstants.REPORT_TYPE, "checkstyle");
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    FileUtil.delete(myReportDir);
+  }
+
+  @Test
+  public void testPreParsedReportReplayed() throws Exception {
+    final File report = new File(myReportDir, "checkstyle.xml");
+    FileUtil.writeFileAndReportErrors(report, FileUtil.readText(TestUtil.getTestDataFile("oneErrorOneWarningOneInfo.xml", "checkstyle")));
+
+    final StringBuilder parsed = new StringBuilder();
+    new CheckstyleFactory().createParser(createParameters(parsed)).parse(report, null);
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final StringBuilder silent = new StringBuilder();
+      final PreParsedReports preParsed = createPreParsedReports(silent, executor);
+      assertTrue(PreParsedReports.isSupported(createParameters(silent)));
+      preParsed.update(createRules(report));
+      preParsed.update(createRules(report));
+      // parsing in advance is completed once the executor gets to the next task
+      executor.submit(new Runnable() {
+        public void run() {
+        }
+      }).get();
+
+      final StringBuilder replayed = new StringBuilder();
+      final InspectionParsingResult result = (InspectionParsingResult)preParsed.replay(report, createParameters(replayed));
+      assertNotNull(result);
+      assertEquals(result.getErrors(), 1);
+      assertEquals(replayed.toString(), parsed.toString());
+      assertEquals(silent.length(), 0);
+      assertEquals(preParsed.getReplayed(), 1);
+
+      // replayed only once
+      assertNull(preParsed.replay(report, createParameters(new StringBuilder())));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testChangedPreParsedReportNotReplayed() throws Exception {
+    final File report = new File(myReportDir, "checkstyle.xml");
+    FileUtil.writeFileAndReportErrors(report, FileUtil.readText(TestUtil.getTestDataFile("oneErrorOneWarningOneInfo.xml", "checkstyle")));
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final PreParsedReports preParsed = createPreParsedReports(new StringBuilder(), executor);
+      preParsed.update(createRules(report));
+      preParsed.update(createRules(report));
+
+      FileUtil.writeFileAndReportErrors(report, "<checkstyle/>");
+      //noinspection ResultOfMethodCallIgnored
+      report.setLastModified(report.lastModified() + 2000);
+      assertNull(preParsed.replay(report, createParameters(new StringBuilder())));
+
+      myParameters.put(XmlReportPluginConstants.FAIL_FAST_INSPECTIONS, "true");
+      assertFalse(PreParsedReports.isSupported(createParameters(new StringBuilder())));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testUnfinishedPreParsingNotWaitedFor() throws Exception {
+    final File report = new File(myReportDir, "checkstyle.xml");
+    FileUtil.writeFileAndReportErrors(report, FileUtil.readText(TestUtil.getTestDataFile("oneErrorOneWarningOneInfo.xml", "checkstyle")));
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch busy = new CountDownLatch(1);
+    try {
+      // the only thread is taken by a parse at finish
+      executor.submit(new Callable<Object>() {
+        public Object call() throws Exception {
+          return busy.await(10, TimeUnit.SECONDS);
+        }
+      });
+      final PreParsedReports preParsed = createPreParsedReports(new StringBuilder(), executor);
+      preParsed.update(createRules(report));
+      preParsed.update(createRules(report));
+
+      assertNull(preParsed.replay(report, createParameters(new StringBuilder())));
+      assertEquals(preParsed.getReplayed(), 0);
+    } finally {
+      busy.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @NotNull
+  private PreParsedReports createPreParsedReports(@NotNull StringBuilder result, @NotNull ExecutorService executor) {
+    final ParseScheduler scheduler = new ParseScheduler(executor, 1, ParseScheduler.Order.SUBMISSION, 0, 0);
+    return new PreParsedReports(new CheckstyleFactory(), createParameters(result), scheduler, this, 0, 1024 * 1024);
+  }
+
+  @NotNull
+  private static Rules createRules(@NotNull final File report) {
+    return new Rules() {
+      @NotNull
+      public Collection<String> getBody() {
+        return Collections.singletonList(report.getPath());
+      }
+
+      @NotNull
+      public Collection<File> getPaths() {
+        return Collections.singletonList(report);
+      }
+
+      @NotNull
+      public Collection<File> collectFiles() {
+        return Collections.singletonList(report);
+      }
+    };
+  }
+
+  @NotNull
+  private ParseParameters createParameters(@NotNull final StringBuilder result) {
+    return new ParseParameters() {
+      public boolean isVerbose() {
+        return false;
+      }
+
+      @NotNull
+      public BuildProgressLogger getThreadLogger() {
+        throw new IllegalStateException();
+      }
+
+      @NotNull
+      public InspectionReporter getInspectionReporter() {
+        return TestUtil.createInspectionReporter(result);
+      }
+
+      @NotNull
+      public InspectionLimits getInspectionLimits() {
+        return InspectionLimits.UNLIMITED;
+      }
+
+      @NotNull
+      public DuplicationReporter getDuplicationReporter() {
+        return TestUtil.createDuplicationReporter(result);
+      }
+
+      @NotNull
+      public TestReporter getTestReporter() {
+        return TestUtil.createTestResultsWriter(result);
+      }
+
+      @Nullable
+      public ReportCache getReportCache() {
+        return null;
+      }
+
+      @Nullable
+      public ParseStatistics getParseStatistics() {
+        return null;
+      }
+
+      @NotNull
+      public ParseBudget getParseBudget() {
+        return ParseBudget.UNLIMITED;
+      }
+
+      @NotNull
+      public Map<String, String> getParameters() {
+        return myParameters;
+      }
+
+      @NotNull
+      public String getType() {
+        return myParameters.get(XmlReportPluginConstants.REPORT_TYPE);
+      }
+
+      @NotNull
+      public File getCheckoutDir() {
+        throw new IllegalStateException();
+      }
+    };
+  }
+}
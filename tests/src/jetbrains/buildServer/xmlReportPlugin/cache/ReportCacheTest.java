@@ -0,0 +1,343 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.cache;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.agent.BuildProgressLogger;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.*;
+import jetbrains.buildServer.xmlReportPlugin.duplicates.DuplicationReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionReporter;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionResult;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionTypeResult;
+import jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit.AntJUnitFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.checkstyle.CheckstyleFactory;
+import jetbrains.buildServer.xmlReportPlugin.parsers.jslint.JSLintFactory;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ReportCacheTest {
+  private File myCacheDir;
+  private Map<String, String> myParameters;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myCacheDir = FileUtil.createTempDirectory("reportCache", "");
+    myParameters = new HashMap<String, String>();
+    myParameters.put(XmlReportPluginConstants.REPORT_TYPE, "junit");
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    FileUtil.delete(myCacheDir);
+  }
+
+  @Test
+  public void testReplaysTests() throws Exception {
+    final StringBuilder parsed = new StringBuilder();
+    final ReportEvents.Recorder recorder = new ReportEvents.Recorder(Long.MAX_VALUE);
+    final ParseParameters parameters = recorder.wrap(createParameters(parsed));
+    final Parser parser = new AntJUnitFactory().createParser(parameters);
+    assertTrue(parser.parse(TestUtil.getTestDataFile("twoCasesFailed.xml", "junit"), null));
+
+    final byte[] events = recorder.finish(parser.getParsingResult());
+    assertNotNull(events);
+
+    final StringBuilder replayed = new StringBuilder();
+    final TestParsingResult result = (TestParsingResult)ReportEvents.replay(events, createParameters(replayed));
+    assertNotNull(result);
+    assertEquals(result.getSuites(), 1);
+    assertEquals(result.getTests(), 2);
+    assertEquals(replayed.toString(), parsed.toString());
+  }
+
+  @Test
+  public void testReplaysInspections() throws Exception {
+    final StringBuilder parsed = new StringBuilder();
+    final ReportEvents.Recorder recorder = new ReportEvents.Recorder(Long.MAX_VALUE);
+    final ParseParameters parameters = recorder.wrap(createParameters(parsed));
+    final Parser parser = new CheckstyleFactory().createParser(parameters);
+    assertTrue(parser.parse(TestUtil.getTestDataFile("oneErrorOneWarningOneInfo.xml", "checkstyle"), null));
+
+    final byte[] events = recorder.finish(parser.getParsingResult());
+    assertNotNull(events);
+
+    final StringBuilder replayed = new StringBuilder();
+    final InspectionParsingResult result = (InspectionParsingResult)ReportEvents.replay(events, createParameters(replayed));
+    assertNotNull(result);
+    assertEquals(result.getErrors(), 1);
+    assertEquals(result.getWarnings(), 1);
+    assertEquals(result.getInfos(), 1);
+    assertEquals(replayed.toString(), parsed.toString());
+  }
+
+  @Test
+  public void testReplaysInspectionsBuildMark() throws Exception {
+    myParameters.put(XmlReportPluginConstants.REPORT_TYPE, "jslint");
+    final ReportCache cache = new ReportCache(myCacheDir, 1024 * 1024);
+    final File report = TestUtil.getTestDataFile("misc.xml", "jslint");
+    final String key = ReportCache.getKey(report, createParameters(new StringBuilder()));
+    assertNotNull(key);
+
+    final StringBuilder parsed = new StringBuilder();
+    final ReportEvents.Recorder recorder = cache.createRecorder();
+    final Parser parser = new JSLintFactory().createParser(recorder.wrap(createMarkingParameters(parsed)));
+    assertTrue(parser.parse(report, null));
+    cache.store(key, recorder, parser.getParsingResult());
+    assertTrue(parsed.toString().endsWith("INSPECTIONS BUILD\n"), parsed.toString());
+
+    final StringBuilder replayed = new StringBuilder();
+    assertNotNull(cache.replay(key, createMarkingParameters(replayed)));
+    assertEquals(replayed.toString(), parsed.toString());
+  }
+
+  @Test
+  public void testMalformedEventsNotReplayed() throws Exception {
+    final ReportEvents.Recorder recorder = new ReportEvents.Recorder(Long.MAX_VALUE);
+    recorder.wrap(createParameters(new StringBuilder())).getTestReporter().openTestSuite("suite");
+    final byte[] events = recorder.finish(new TestParsingResult(1, 0));
+    assertNotNull(events);
+
+    final byte[] truncated = new byte[events.length - 3];
+    System.arraycopy(events, 0, truncated, 0, truncated.length);
+    final StringBuilder replayed = new StringBuilder();
+    assertNull(ReportEvents.replay(truncated, createParameters(replayed)));
+    assertEquals(replayed.length(), 0);
+  }
+
+  @Test
+  public void testRecordingStopsWhenTooLarge() throws Exception {
+    final ReportEvents.Recorder recorder = new ReportEvents.Recorder(10);
+    recorder.wrap(createParameters(new StringBuilder())).getTestReporter().testStdOutput("more than ten characters");
+    assertNull(recorder.finish(new TestParsingResult(0, 0)));
+  }
+
+  @Test
+  public void testHitAndMiss() throws Exception {
+    final ReportCache cache = new ReportCache(myCacheDir, 1024 * 1024);
+    final File report = TestUtil.getTestDataFile("twoCasesFailed.xml", "junit");
+    final String key = ReportCache.getKey(report, createParameters(new StringBuilder()));
+    assertNotNull(key);
+
+    assertNull(cache.replay(key, createParameters(new StringBuilder())));
+    assertEquals(cache.getMisses(), 1);
+
+    final ReportEvents.Recorder recorder = cache.createRecorder();
+    final StringBuilder parsed = new StringBuilder();
+    final Parser parser = new AntJUnitFactory().createParser(recorder.wrap(createParameters(parsed)));
+    parser.parse(report, null);
+    cache.store(key, recorder, parser.getParsingResult());
+
+    final StringBuilder replayed = new StringBuilder();
+    assertNotNull(cache.replay(key, createParameters(replayed)));
+    assertEquals(cache.getHits(), 1);
+    assertEquals(replayed.toString(), parsed.toString());
+  }
+
+  @Test
+  public void testHitInAnotherBuild() throws Exception {
+    final ReportCache cache = new ReportCache(myCacheDir, 1024 * 1024);
+    final File report = TestUtil.getTestDataFile("twoCasesFailed.xml", "junit");
+
+    myParameters.put("build.number", "1");
+    final String key = ReportCache.getKey(report, createParameters(new StringBuilder()));
+    assertNotNull(key);
+    final ReportEvents.Recorder recorder = cache.createRecorder();
+    final StringBuilder parsed = new StringBuilder();
+    final Parser parser = new AntJUnitFactory().createParser(recorder.wrap(createParameters(parsed)));
+    parser.parse(report, null);
+    cache.store(key, recorder, parser.getParsingResult());
+
+    myParameters.put("build.number", "2");
+    final String nextKey = ReportCache.getKey(report, createParameters(new StringBuilder()));
+    assertNotNull(nextKey);
+    final StringBuilder replayed = new StringBuilder();
+    assertNotNull(cache.replay(nextKey, createParameters(replayed)));
+    assertEquals(cache.getHits(), 1);
+    assertEquals(replayed.toString(), parsed.toString());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() throws Exception {
+    final ReportCache cache = new ReportCache(myCacheDir, 150);
+    store(cache, "first", 40);
+    store(cache, "second", 40);
+    //noinspection ResultOfMethodCallIgnored
+    new File(myCacheDir, "first.events").setLastModified(System.currentTimeMillis() - 20000);
+    //noinspection ResultOfMethodCallIgnored
+    new File(myCacheDir, "second.events").setLastModified(System.currentTimeMillis() - 10000);
+    store(cache, "third", 40);
+
+    assertFalse(new File(myCacheDir, "first.events").exists());
+    assertTrue(new File(myCacheDir, "second.events").exists());
+    assertTrue(new File(myCacheDir, "third.events").exists());
+  }
+
+  @Test
+  public void testKey() throws Exception {
+    final File report = TestUtil.getTestDataFile("twoCasesFailed.xml", "junit");
+    final String key = ReportCache.getKey(report, createParameters(new StringBuilder()));
+    assertEquals(ReportCache.getKey(report, createParameters(new StringBuilder())), key);
+
+    myParameters.put(XmlReportPluginConstants.REPORT_DIRS, "other/*.xml");
+    assertEquals(ReportCache.getKey(report, createParameters(new StringBuilder())), key);
+
+    // another build of the same configuration
+    myParameters.put("build.number", "2");
+    myParameters.put("teamcity.build.id", "102");
+    assertEquals(ReportCache.getKey(report, createParameters(new StringBuilder())), key);
+
+    myParameters.put(XmlReportPluginConstants.LOG_INTERNAL_SYSTEM_ERROR, "true");
+    assertNotEquals(ReportCache.getKey(report, createParameters(new StringBuilder())), key);
+
+    assertNotEquals(ReportCache.getKey(TestUtil.getTestDataFile("twoCasesSecondBreakClosing.xml", "junit"), createParameters(new StringBuilder())), key);
+
+    myParameters.put(XmlReportPluginConstants.REPORT_TYPE, "pmdCpd");
+    assertNull(ReportCache.getKey(report, createParameters(new StringBuilder())));
+
+    myParameters.put(XmlReportPluginConstants.REPORT_TYPE, "pmd");
+    myParameters.put(XmlReportPluginConstants.FAIL_FAST_INSPECTIONS, "true");
+    assertNull(ReportCache.getKey(report, createParameters(new StringBuilder())));
+  }
+
+  /**
+   * Parameters with inspection reporter which also logs the inspections build mark
+   */
+  @NotNull
+  private ParseParameters createMarkingParameters(@NotNull final StringBuilder result) {
+    return new DelegatingParseParameters(createParameters(result)) {
+      @NotNull
+      @Override
+      public InspectionReporter getInspectionReporter() {
+        final InspectionReporter delegate = super.getInspectionReporter();
+        return new InspectionReporter() {
+          public void reportInspection(@NotNull InspectionResult inspection) {
+            delegate.reportInspection(inspection);
+          }
+
+          public void reportInspectionType(@NotNull InspectionTypeResult inspectionType) {
+            delegate.reportInspectionType(inspectionType);
+          }
+
+          public void markBuildAsInspectionsBuild() {
+            result.append("INSPECTIONS BUILD\n");
+          }
+
+          public void info(@NotNull String message) {
+            delegate.info(message);
+          }
+
+          public void warning(@NotNull String message) {
+            delegate.warning(message);
+          }
+
+          public void error(@NotNull String message) {
+            delegate.error(message);
+          }
+
+          public void failure(@NotNull String message) {
+            delegate.failure(message);
+          }
+        };
+      }
+    };
+  }
+
+  private void store(@NotNull ReportCache cache, @NotNull String key, int chars) {
+    final ReportEvents.Recorder recorder = cache.createRecorder();
+    final StringBuilder output = new StringBuilder();
+    for (int i = 0; i < chars; ++i) output.append('a');
+    recorder.wrap(createParameters(new StringBuilder())).getTestReporter().testStdOutput(output.toString());
+    cache.store(key, recorder, new TestParsingResult(0, 0));
+  }
+
+  @NotNull
+  private ParseParameters createParameters(@NotNull final StringBuilder result) {
+    return new ParseParameters() {
+      public boolean isVerbose() {
+        return false;
+      }
+
+      @NotNull
+      public BuildProgressLogger getThreadLogger() {
+        throw new IllegalStateException();
+      }
+
+      @NotNull
+      public InspectionReporter getInspectionReporter() {
+        return TestUtil.createInspectionReporter(result);
+      }
+
+      @NotNull
+      public InspectionLimits getInspectionLimits() {
+        return InspectionLimits.UNLIMITED;
+      }
+
+      @NotNull
+      public DuplicationReporter getDuplicationReporter() {
+        return TestUtil.createDuplicationReporter(result);
+      }
+
+      @NotNull
+      public TestReporter getTestReporter() {
+        return TestUtil.createTestResultsWriter(result);
+      }
+
+      @Nullable
+      public ReportCache getReportCache() {
+        return null;
+      }
+
+      @Nullable
+      public ParseStatistics getParseStatistics() {
+        return null;
+      }
+
+      @NotNull
+      public ParseBudget getParseBudget() {
+        return ParseBudget.UNLIMITED;
+      }
+
+      @NotNull
+      public Map<String, String> getParameters() {
+        return myParameters;
+      }
+
+      @NotNull
+      public String getType() {
+        return myParameters.get(XmlReportPluginConstants.REPORT_TYPE);
+      }
+
+      @NotNull
+      public File getCheckoutDir() {
+        throw new IllegalStateException();
+      }
+    };
+  }
+}
@@ -16,13 +16,28 @@
 
 package jetbrains.buildServer.xmlReportPlugin.parsers.antJUnit;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
+import jetbrains.buildServer.xmlReportPlugin.ParseTimeoutException;
+import jetbrains.buildServer.xmlReportPlugin.tests.PassedTestOutputLimiter;
 import jetbrains.buildServer.xmlReportPlugin.tests.SecondDurationParser;
+import jetbrains.buildServer.xmlReportPlugin.tests.StackTraceCache;
+import jetbrains.buildServer.xmlReportPlugin.tests.StackTraceDeduplicator;
 import jetbrains.buildServer.xmlReportPlugin.tests.TestParsingResult;
+import jetbrains.buildServer.xmlReportPlugin.tests.TestReporter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 @Test
 public class AntJUnitReportParserTest extends BaseParserTestCase {
@@ -458,6 +473,126 @@ public class AntJUnitReportParserTest extends BaseParserTestCase {
       "EndSuite\n");
   }
 
+  @Test
+  public void testPassedTestOutputLimited() throws Exception {
+    final AtomicLong suppressed = new AtomicLong();
+    parse(new AntJUnitReportParser(new PassedTestOutputLimiter(getTestReporter(), 4, suppressed), new SecondDurationParser(), false), "caseWithSystemOut.xml");
+    assertResultEquals(
+      "TestSuite:TestCase\n" +
+      "  Test:TestCase.test1\n" +
+      "    StdOutput:from\n" +
+      "...\n" +
+      "  EndTest:0\n" +
+      "------------------------\n" +
+      "EndSuite\n");
+    assertEquals(suppressed.get(), 6);
+  }
+
+  @Test
+  public void testPassedTestOutputDropped() throws Exception {
+    final AtomicLong suppressed = new AtomicLong();
+    parse(new AntJUnitReportParser(new PassedTestOutputLimiter(getTestReporter(), 0, suppressed), new SecondDurationParser(), false), "caseWithSystemOut.xml");
+    assertResultEquals(
+      "TestSuite:TestCase\n" +
+      "  Test:TestCase.test1\n" +
+      "  EndTest:0\n" +
+      "------------------------\n" +
+      "EndSuite\n");
+    assertEquals(suppressed.get(), 10);
+  }
+
+  @Test
+  public void testTestInterruptedWhenClosedCounted() throws Exception {
+    final TestReporter reporter = new PassedTestOutputLimiter(getTestReporter(), Integer.MAX_VALUE, new AtomicLong()) {
+      private int myClosed;
+
+      @Override
+      public void closeTest(long duration) {
+        super.closeTest(duration);
+        if (++myClosed == 3) throw new ParseTimeoutException("Parsing time limit exceeded");
+      }
+    };
+    final AntJUnitReportParser parser = new AntJUnitReportParser(reporter, new SecondDurationParser(), false);
+    try {
+      parser.parse(getReport("nineCases.xml"), null);
+      fail("Timeout expected");
+    } catch (ParseTimeoutException e) {
+      // parsing is interrupted after the third test
+    }
+    assertEquals(((TestParsingResult)parser.getParsingResult()).getTests(), 3);
+  }
+
+  @Test
+  public void testRepeatedStackTraceReferences() throws Exception {
+    final StackTraceCache cache = new StackTraceCache();
+    parse(new AntJUnitReportParser(new StackTraceDeduplicator(getTestReporter(), cache, true), new SecondDurationParser(), false), "threeCasesSameTrace.xml");
+    assertResultEquals(
+      "TestSuite:TestCase\n" +
+      "  Test:TestCase.test1\n" +
+      "    Fail:java.lang.IllegalStateException: Fixture is broken Message: java.lang.IllegalStateException: Fixture is broken\n" +
+      "      at TestCase.setUp(Unknown Source)\n" +
+      "  EndTest:31\n" +
+      "------------------------\n" +
+      "  Test:TestCase.test2\n" +
+      "    Fail:java.lang.IllegalStateException: Fixture is broken Message: same as TestCase.test1\n" +
+      "  EndTest:31\n" +
+      "------------------------\n" +
+      "  Test:TestCase.test3\n" +
+      "    Fail:java.lang.IllegalStateException: Fixture is broken Message: same as TestCase.test1\n" +
+      "  EndTest:31\n" +
+      "------------------------\n" +
+      "EndSuite\n");
+    assertEquals(cache.getDuplicates(), 2);
+    assertTrue(cache.getSavedChars() > 0);
+  }
+
+  @Test
+  public void testRepeatedStackTraceShared() throws Exception {
+    final List<String> traces = new ArrayList<String>();
+    final TestReporter reporter = new PassedTestOutputLimiter(getTestReporter(), Integer.MAX_VALUE, new AtomicLong()) {
+      @Override
+      public void testFail(@Nullable String error, @Nullable String stacktrace) {
+        traces.add(stacktrace);
+        super.testFail(error, stacktrace);
+      }
+    };
+    final StackTraceCache cache = new StackTraceCache();
+    parse(new AntJUnitReportParser(new StackTraceDeduplicator(reporter, cache, false), new SecondDurationParser(), false), "threeCasesSameTrace.xml");
+
+    assertEquals(traces.size(), 3);
+    assertSame(traces.get(1), traces.get(0));
+    assertSame(traces.get(2), traces.get(0));
+    assertFalse(prepareResult().contains("same as"));
+    assertEquals(cache.getDuplicates(), 2);
+    assertEquals(cache.getSavedChars(), 0);
+  }
+
+  @Test
+  public void testRepeatedStackTraceReferencesReparsedReport() throws Exception {
+    final StackTraceCache cache = new StackTraceCache();
+    parse(new AntJUnitReportParser(new StackTraceDeduplicator(getTestReporter(), cache, true), new SecondDurationParser(), false), "threeCasesSameTrace.xml");
+    myResult.setLength(0);
+    parse(new AntJUnitReportParser(new StackTraceDeduplicator(getTestReporter(), cache, true), new SecondDurationParser(), false), "threeCasesSameTrace.xml");
+
+    assertTrue(prepareResult().contains("  Test:TestCase.test1\n" +
+                                        "    Fail:java.lang.IllegalStateException: Fixture is broken Message: java.lang.IllegalStateException: Fixture is broken\n"));
+    assertEquals(cache.getDuplicates(), 4);
+  }
+
+  @Test
+  public void testStackTraceCacheBoundedByChars() throws Exception {
+    final StackTraceCache cache = new StackTraceCache(10);
+    assertNull(cache.getOrRemember("12345", "test1"));
+    assertNull(cache.getOrRemember("67890", "test2"));
+    assertNull(cache.getOrRemember("abcde", "test3"));
+    assertEquals(cache.getChars(), 10);
+
+    assertNull(cache.getOrRemember("12345", "test4"));
+    assertNotNull(cache.getOrRemember("abcde", "test5"));
+    assertNull(cache.getOrRemember("longer than ten", "test6"));
+    assertEquals(cache.getDuplicates(), 1);
+  }
+
   @Test
   public void testLogCaseSystemErr() throws Exception {
     parse("caseWithSystemErr.xml");
@@ -18,9 +18,15 @@ package jetbrains.buildServer.xmlReportPlugin.parsers.checkstyle;
 
 import jetbrains.buildServer.xmlReportPlugin.BaseParserTestCase;
 import jetbrains.buildServer.xmlReportPlugin.Parser;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionLimits;
+import jetbrains.buildServer.xmlReportPlugin.inspections.InspectionParsingResult;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
 /**
  * User: vbedrosova
  * Date: 25.12.2009
@@ -67,4 +73,63 @@ public class CheckstyleReportParserTest extends BaseParserTestCase {
   public void testBig() throws Exception {
     runTest("big.xml");
   }
+
+  @Test
+  public void testFailFastLimits() throws Exception {
+    final InspectionLimits limits = new InspectionLimits(5, -1);
+    final InspectionParsingResult result = (InspectionParsingResult)parse(new CheckstyleReportParser(getInspectionReporter(), limits), "big.xml");
+
+    assertEquals(result.getErrors(), 6);
+    assertTrue(result.isTruncated());
+    assertTrue(limits.isExceeded());
+    assertEquals(limits.getStoppedReports(), 1);
+
+    final String actual = prepareResult();
+    assertEquals(count(actual, "InspectionInstance{"), 5);
+    assertEquals(count(actual, "WARNING: Inspection limits exceeded"), 1);
+  }
+
+  @Test
+  public void testFailFastLimitsOtherReportNotParsed() throws Exception {
+    final InspectionLimits limits = new InspectionLimits(5, -1);
+    parse(new CheckstyleReportParser(getInspectionReporter(), limits), "big.xml");
+    final InspectionParsingResult result = (InspectionParsingResult)parse(new CheckstyleReportParser(getInspectionReporter(), limits), "oneErrorOneWarningOneInfo.xml");
+
+    assertEquals(result.getErrors(), 0);
+    assertTrue(result.isTruncated());
+    assertEquals(limits.getStoppedReports(), 2);
+    assertEquals(count(prepareResult(), "InspectionInstance{"), 5);
+  }
+
+  @Test
+  public void testTruncatedResultAccumulated() throws Exception {
+    final InspectionLimits limits = new InspectionLimits(5, -1);
+    final InspectionParsingResult total = InspectionParsingResult.createEmptyResult();
+    total.accumulate(parse(new CheckstyleReportParser(getInspectionReporter(), InspectionLimits.UNLIMITED), "oneErrorOneWarningOneInfo.xml"));
+    assertFalse(total.isTruncated());
+
+    total.accumulate(parse(new CheckstyleReportParser(getInspectionReporter(), limits), "big.xml"));
+    assertTrue(total.isTruncated());
+    assertEquals(total.getErrors(), 7);
+  }
+
+  @Test
+  public void testFailFastLimitsReparsedReportNotCountedTwice() throws Exception {
+    final InspectionLimits limits = new InspectionLimits(2, -1);
+    parse(new CheckstyleReportParser(getInspectionReporter(), limits), "oneErrorOneWarningOneInfo.xml");
+    parse(new CheckstyleReportParser(getInspectionReporter(), limits), "oneErrorOneWarningOneInfo.xml");
+    parse(new CheckstyleReportParser(getInspectionReporter(), limits), "oneErrorOneWarningOneInfo.xml");
+
+    assertTrue(!limits.isExceeded());
+    assertEquals(limits.getStoppedReports(), 0);
+    assertEquals(count(prepareResult(), "InspectionInstance{"), 9);
+  }
+
+  private static int count(@NotNull String text, @NotNull String what) {
+    int count = 0;
+    for (int i = text.indexOf(what); i >= 0; i = text.indexOf(what, i + what.length())) {
+      ++count;
+    }
+    return count;
+  }
 }
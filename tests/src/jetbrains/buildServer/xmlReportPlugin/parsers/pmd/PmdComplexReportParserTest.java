@@ -71,6 +71,9 @@ public class PmdComplexReportParserTest extends BaseParserTestCase {
         myResult.append(inspectionType.toString()).append("\n");
       }
 
+      public void markBuildAsInspectionsBuild() {
+      }
+
       public void info(@NotNull final String message) {
         myResult.append("MESSAGE: ").append(message).append("\n");
       }
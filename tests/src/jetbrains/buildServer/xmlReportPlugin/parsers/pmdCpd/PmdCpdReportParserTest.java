@@ -22,6 +22,8 @@ import jetbrains.buildServer.xmlReportPlugin.Parser;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+
 /**
  * User: vbedrosova
  * Date: 07.09.2010
@@ -52,6 +54,15 @@ public class PmdCpdReportParserTest extends BaseParserTestCase {
     runTest("result2.xml");
   }
 
+  @Test
+  public void testFragmentHashMatchesTrimmedTextHash() throws Exception {
+    for (String text : new String[]{"", "  \n\t ", "a", "  code  ", "\n  int a = 1;\n\n  int b = 2;  \r\n", "x \u0000 y"}) {
+      final TrimmedTextHash hash = new TrimmedTextHash();
+      hash.append(text);
+      assertEquals(hash.getHash(), text.trim().hashCode(), "Hash mismatch for \"" + text + "\"");
+    }
+  }
+
   private void runTest(final String reportName) throws Exception {
     parse(reportName);
     assertResultEquals(getExpectedResult(reportName + ".gold"));
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.ready;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.xmlReportPlugin.utils.FileSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ReportReadyPolicyTest {
+  private File myDir;
+  private File myReport;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myDir = FileUtil.createTempDirectory("readyPolicy", "");
+    myReport = new File(myDir, "report.xml");
+    FileUtil.writeFileAndReportErrors(myReport, "<testsuite>");
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void testCreate() {
+    assertSame(ReportReadyPolicies.create(null), ReportReadyPolicy.ALWAYS);
+    assertSame(ReportReadyPolicies.create("none"), ReportReadyPolicy.ALWAYS);
+    assertSame(ReportReadyPolicies.create("unknown"), ReportReadyPolicy.ALWAYS);
+    assertEquals(ReportReadyPolicies.create("marker").toString(), "marker.done");
+    assertEquals(ReportReadyPolicies.create("marker:.ok").toString(), "marker.ok");
+    assertEquals(ReportReadyPolicies.create("stableSize").toString(), "stableSize:2");
+    assertEquals(ReportReadyPolicies.create(" stableSize:5 ").toString(), "stableSize:5");
+    assertEquals(ReportReadyPolicies.create("stableSize:x").toString(), "stableSize:2");
+    assertTrue(ReportReadyPolicies.create("lock") instanceof LockProbeReadyPolicy);
+    assertEquals(ReportReadyPolicies.create("adaptive").toString(), "adaptive:1024");
+    assertEquals(ReportReadyPolicies.create("adaptive:64").toString(), "adaptive:64");
+  }
+
+  @Test
+  public void testMarker() throws Exception {
+    final ReportReadyPolicy policy = new MarkerFileReadyPolicy(".done");
+    assertFalse(policy.isReady(myReport, snapshot()));
+
+    final File marker = new File(myDir, "report.xml.done");
+    FileUtil.writeFileAndReportErrors(marker, "");
+    assertTrue(policy.isReady(myReport, snapshot()));
+
+    // marker of the previous report version
+    marker.setLastModified(myReport.lastModified() - 10000L);
+    assertFalse(policy.isReady(myReport, snapshot()));
+  }
+
+  @Test
+  public void testStableSize() throws Exception {
+    final ReportReadyPolicy policy = new StableSizeReadyPolicy(2);
+    assertFalse(policy.isReady(myReport, snapshot()));
+    assertFalse(policy.isReady(myReport, snapshot()));
+
+    FileUtil.writeFileAndReportErrors(myReport, "<testsuite></testsuite>");
+    assertFalse(policy.isReady(myReport, snapshot()));
+    assertFalse(policy.isReady(myReport, snapshot()));
+    assertTrue(policy.isReady(myReport, snapshot()));
+  }
+
+  @Test
+  public void testLockProbe() throws Exception {
+    final ReportReadyPolicy policy = new LockProbeReadyPolicy();
+    assertTrue(policy.isReady(myReport, snapshot()));
+
+    final RandomAccessFile writer = new RandomAccessFile(myReport, "rw");
+    try {
+      final FileLock lock = writer.getChannel().lock();
+      assertFalse(policy.isReady(myReport, snapshot()));
+      lock.release();
+    } finally {
+      writer.close();
+    }
+    assertTrue(policy.isReady(myReport, snapshot()));
+    assertFalse(policy.isReady(new File(myDir, "missing.xml"), snapshot()));
+  }
+
+  @Test
+  public void testAdaptiveStage() throws Exception {
+    final AdaptiveStagePolicy policy = new AdaptiveStagePolicy(1);
+    final File large = new File(myDir, "large.xml");
+    final File growing = new File(myDir, "growing.xml");
+
+    // small reports are parsed right away, every time they are updated
+    assertTrue(policy.isReady(myReport, snapshot()));
+    assertTrue(policy.isReady(myReport, new FileSnapshot(true, 10, 1000)));
+
+    // larger ones once they don't change during a run
+    assertFalse(policy.isReady(large, new FileSnapshot(true, 2048, 1000)));
+    assertFalse(policy.isReady(large, new FileSnapshot(true, 2500, 2000)));
+    assertTrue(policy.isReady(large, new FileSnapshot(true, 2500, 2000)));
+    assertEquals(policy.getDecisions(AdaptiveStagePolicy.Decision.SPECULATIVE), 1);
+
+    // reports which keep growing are left for the step finish
+    assertFalse(policy.isReady(growing, new FileSnapshot(true, 2048, 1000)));
+    assertFalse(policy.isReady(growing, new FileSnapshot(true, 2100, 2000)));
+    assertFalse(policy.isReady(growing, new FileSnapshot(true, 2200, 3000)));
+    assertFalse(policy.isReady(growing, new FileSnapshot(true, 2300, 4000)));
+    assertFalse(policy.isReady(growing, new FileSnapshot(true, 2300, 4000)));
+
+    // as well as fast growing ones
+    assertFalse(policy.isReady(large, new FileSnapshot(true, 2500, 5000)));
+    assertFalse(policy.isReady(large, new FileSnapshot(true, 5000, 6000)));
+    assertFalse(policy.isReady(large, new FileSnapshot(true, 5000, 6000)));
+
+    // the last decision is counted once per report, the large one was deferred after it was parsed speculatively
+    assertEquals(policy.getDecisions(AdaptiveStagePolicy.Decision.RUNTIME), 1);
+    assertEquals(policy.getDecisions(AdaptiveStagePolicy.Decision.SPECULATIVE), 0);
+    assertEquals(policy.getDecisions(AdaptiveStagePolicy.Decision.DEFERRED), 2);
+  }
+
+  @NotNull
+  private FileSnapshot snapshot() {
+    return new FileSnapshot(true, myReport.length(), myReport.lastModified());
+  }
+}
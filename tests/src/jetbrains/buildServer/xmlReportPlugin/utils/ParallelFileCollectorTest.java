@@ -0,0 +1,111 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.util.pathMatcher.AntPatternFileCollector;
+import org.jetbrains.annotations.NotNull;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ParallelFileCollectorTest {
+  private File myBaseDir;
+  private ForkJoinPool myPool;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    myBaseDir = FileUtil.createTempDirectory("parallelCollector", "");
+    myPool = new ForkJoinPool(4);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    myPool.shutdownNow();
+    FileUtil.delete(myBaseDir);
+  }
+
+  @Test
+  public void testSameFilesAsScanDir() throws Exception {
+    for (int i = 0; i < 5; ++i) {
+      for (int j = 0; j < 5; ++j) {
+        createFile("module" + i + "/build/test-results/test/TEST-Test" + j + ".xml");
+        createFile("module" + i + "/build/test-results/test/binary/output" + j + ".bin");
+        createFile("module" + i + "/src/main/Class" + j + ".java");
+      }
+      createFile("module" + i + "/build/reports/checkstyle.xml");
+    }
+    createFile("TEST-root.xml");
+
+    assertSameAsScanDir("+:**/build/test-results/**/*.xml");
+    assertSameAsScanDir("+:**/*.xml", "-:module3/**");
+    assertSameAsScanDir("+:**/*.xml", "-:**/reports/**", "-:module1/build/test-results/test/TEST-Test2.xml");
+    assertSameAsScanDir("+:module?/build/**/TEST-*.xml", "-:module4/**/*", "+:module0/src");
+    assertSameAsScanDir("module2/build", "-:module2/build/test-results/test/binary/**");
+  }
+
+  @Test
+  public void testMoreSpecificIncludeInsideExcludedDir() throws Exception {
+    final File included = createFile("module1/build/reports/checkstyle.xml");
+    createFile("module1/build/reports/pmd.xml");
+    createFile("module2/build/reports/checkstyle.xml");
+
+    final List<File> files = collect("+:**/checkstyle.xml", "-:module1/build/**", "+:module1/build/reports/checkstyle.xml");
+    assertEquals(files.size(), 2);
+    assertTrue(files.contains(included));
+  }
+
+  @Test
+  public void testSymlinkLoop() throws Exception {
+    final File report = createFile("a/b/TEST-report.xml");
+    try {
+      Files.createSymbolicLink(new File(myBaseDir, "a/b/loop").toPath(), new File(myBaseDir, "a").toPath());
+    } catch (Exception e) {
+      throw new SkipException("Symbolic links are not supported: " + e.getMessage());
+    }
+
+    assertEquals(collect("+:**/*.xml"), Collections.singletonList(report));
+  }
+
+  private void assertSameAsScanDir(@NotNull String... rules) {
+    final List<File> expected = new ArrayList<File>(AntPatternFileCollector.scanDir(myBaseDir, rules, new AntPatternFileCollector.ScanOption[]{
+      AntPatternFileCollector.ScanOption.USE_RULE_STRICTNESS, AntPatternFileCollector.ScanOption.ALLOW_EXTERNAL_SCAN}));
+    Collections.sort(expected);
+    assertEquals(collect(rules), expected, Arrays.toString(rules));
+  }
+
+  @NotNull
+  private List<File> collect(@NotNull String... rules) {
+    return new ParallelFileCollector(myPool).collect(RulesAutomaton.compile(myBaseDir, Arrays.asList(rules)));
+  }
+
+  @NotNull
+  private File createFile(@NotNull String path) throws Exception {
+    final File file = new File(myBaseDir, path);
+    file.getParentFile().mkdirs();
+    FileUtil.writeFileAndReportErrors(file, "content");
+    return file;
+  }
+}
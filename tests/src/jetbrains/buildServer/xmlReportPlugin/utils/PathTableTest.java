@@ -0,0 +1,84 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class PathTableTest {
+  @Test
+  public void testAddAndFind() {
+    final PathTable table = new PathTable();
+    final String first = new File("/build/reports/TEST-a.xml").getPath();
+    final String second = new File("/build/reports/TEST-b.xml").getPath();
+
+    assertEquals(table.find(first), PathTable.NOT_FOUND);
+    final int firstId = table.add(first);
+    final int secondId = table.add(second);
+
+    assertNotEquals(firstId, secondId);
+    assertEquals(table.add(new String(first)), firstId);
+    assertEquals(table.find(second), secondId);
+    assertEquals(table.getPath(firstId), first);
+    assertEquals(table.size(), 2);
+    assertEquals(table.getDirCount(), 1);
+  }
+
+  @Test
+  public void testSameNameInDifferentDirs() {
+    final PathTable table = new PathTable();
+    final String first = new File("/build/a/TEST.xml").getPath();
+    final String second = new File("/build/b/TEST.xml").getPath();
+
+    final int firstId = table.add(first);
+    assertEquals(table.find(second), PathTable.NOT_FOUND);
+    final int secondId = table.add(second);
+
+    assertNotEquals(firstId, secondId);
+    assertEquals(table.getPath(secondId), second);
+    assertEquals(table.getDirCount(), 2);
+  }
+
+  @Test
+  public void testRelativeAndRootPaths() {
+    final PathTable table = new PathTable();
+    final int relative = table.add("report.xml");
+    final int root = table.add(File.separator + "report.xml");
+
+    assertNotEquals(relative, root);
+    assertEquals(table.getPath(relative), "report.xml");
+    assertEquals(table.getPath(root), File.separator + "report.xml");
+  }
+
+  @Test
+  public void testGrows() {
+    final PathTable table = new PathTable();
+    for (int i = 0; i < 10000; ++i) {
+      assertEquals(table.add(new File("/build/dir" + i % 100, "TEST-" + i + ".xml").getPath()), i);
+    }
+    for (int i = 0; i < 10000; ++i) {
+      final String path = new File("/build/dir" + i % 100, "TEST-" + i + ".xml").getPath();
+      assertEquals(table.find(path), i);
+      assertEquals(table.getPath(i), path);
+    }
+    assertEquals(table.size(), 10000);
+    assertEquals(table.getDirCount(), 100);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class RetryBackoffTest {
+  @Test
+  public void testDelayGrowsExponentially() {
+    final RetryBackoff backoff = new RetryBackoff(1000, 60000);
+    for (int failures = 1; failures <= 5; ++failures) {
+      final long max = 1000L << (failures - 1);
+      for (int i = 0; i < 100; ++i) {
+        final long delay = backoff.getDelay(failures);
+        assertTrue(delay >= max / 2 && delay <= max, failures + ": " + delay);
+      }
+    }
+  }
+
+  @Test
+  public void testDelayLimited() {
+    final RetryBackoff backoff = new RetryBackoff(1000, 5000);
+    for (int i = 0; i < 100; ++i) {
+      final long delay = backoff.getDelay(100);
+      assertTrue(delay >= 2500 && delay <= 5000, String.valueOf(delay));
+    }
+  }
+
+  @Test
+  public void testNone() {
+    assertEquals(RetryBackoff.NONE.getDelay(1), 0);
+    assertEquals(RetryBackoff.NONE.getDelay(10), 0);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2019 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.xmlReportPlugin.utils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class RulesAutomatonTest {
+  private static final File BASE = new File("/base");
+
+  @Test
+  public void testIncluded() {
+    final RulesAutomaton rules = compile("+:**/build/test-results/**/*.xml", "-:module2/**", "+:module2/build/test-results/TEST-keep.xml");
+
+    assertTrue(isIncluded(rules, "module1/build/test-results/test/TEST-A.xml"));
+    assertTrue(isIncluded(rules, "build/test-results/TEST-A.xml"));
+    assertFalse(isIncluded(rules, "module1/build/test-results/test/binary/output.bin"));
+    assertFalse(isIncluded(rules, "module1/build/reports/TEST-A.xml"));
+    assertFalse(isIncluded(rules, "module2/build/test-results/TEST-A.xml"));
+    assertTrue(isIncluded(rules, "module2/build/test-results/TEST-keep.xml"));
+    assertFalse(isIncluded(new File("/other"), rules, "build/test-results/TEST-A.xml"));
+  }
+
+  @Test
+  public void testPlainPathMatchesEverythingUnder() {
+    final RulesAutomaton rules = compile("reports", "-:reports/tmp");
+
+    assertTrue(isIncluded(rules, "reports"));
+    assertTrue(isIncluded(rules, "reports/a/b/TEST-A.xml"));
+    assertFalse(isIncluded(rules, "reports/tmp/TEST-A.xml"));
+    assertFalse(isIncluded(rules, "other/TEST-A.xml"));
+    assertFalse(getState(rules, "reports/tmp").mayIncludeUnder());
+    assertEquals(rules.getRoots(), Collections.singletonList(new File(BASE, "reports")));
+  }
+
+  @Test
+  public void testWildcards() {
+    final RulesAutomaton rules = compile("./a?c/**/**/TEST-*.xml", "+:x/../y/*");
+
+    assertTrue(isIncluded(rules, "abc/TEST-1.xml"));
+    assertTrue(isIncluded(rules, "abc/d/e/TEST-1.xml"));
+    assertFalse(isIncluded(rules, "abbc/TEST-1.xml"));
+    assertFalse(isIncluded(rules, "abc/TEST-1.txt"));
+    assertTrue(isIncluded(rules, "y/file"));
+    assertFalse(isIncluded(rules, "y/z/file"));
+    assertFalse(isIncluded(rules, "x/y/file"));
+  }
+
+  @Test
+  public void testPruning() {
+    final RulesAutomaton rules = compile("+:**/test-results/*.xml", "-:build/**/*", "+:./lib/report.xml", "+:build/keep/*.xml");
+
+    assertTrue(getState(rules, "a/b/c").mayIncludeUnder());
+    assertTrue(getState(rules, "lib").mayIncludeUnder());
+    assertTrue(getState(rules, "build").mayIncludeUnder());
+    assertFalse(getState(rules, "build/other").mayIncludeUnder());
+    assertTrue(getState(rules, "build/keep").mayIncludeUnder());
+    assertTrue(isIncluded(rules, "build/keep/report.xml"));
+    assertFalse(isIncluded(rules, "build/test-results/TEST-A.xml"));
+
+    final RulesAutomaton onlyLib = compile("+:lib/*.xml");
+    assertFalse(getState(onlyLib, "src").mayIncludeUnder());
+    assertFalse(getState(onlyLib, "lib/nested").mayIncludeUnder());
+    assertTrue(getState(onlyLib, "lib").mayIncludeUnder());
+  }
+
+  @Test
+  public void testRoots() {
+    final RulesAutomaton rules = compile("+:a/**/*.xml", "+:a/b/*.xml", "+:c/d/**", "-:e/**", "+:/outer/*.xml");
+    assertEquals(rules.getRoots(), Arrays.asList(new File("/outer"), new File(BASE, "a"), new File(BASE, "c/d")));
+  }
+
+  @NotNull
+  private static RulesAutomaton compile(@NotNull String... rules) {
+    return RulesAutomaton.compile(BASE, Arrays.asList(rules));
+  }
+
+  @NotNull
+  private static RulesAutomaton.State getState(@NotNull RulesAutomaton rules, @NotNull String path) {
+    return rules.getState(RulePattern.split(new File(BASE, path).getAbsolutePath()));
+  }
+
+  private static boolean isIncluded(@NotNull RulesAutomaton rules, @NotNull String path) {
+    return isIncluded(BASE, rules, path);
+  }
+
+  private static boolean isIncluded(@NotNull File base, @NotNull RulesAutomaton rules, @NotNull String path) {
+    return rules.isIncluded(RulePattern.split(new File(base, path).getAbsolutePath()));
+  }
+}